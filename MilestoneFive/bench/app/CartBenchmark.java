@@ -0,0 +1,69 @@
+package app;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks adding to, removing from and counting units in a ShoppingCart that
+ * already holds the given number of distinct products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int distinctProducts;
+
+    private ShoppingCart<SalableProduct> cart;
+    private List<SalableProduct> products;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        products = SyntheticCatalog.generate(distinctProducts);
+        cart = new ShoppingCart<>();
+        for (SalableProduct product : products) {
+            cart.addProduct(product, 3);
+        }
+    }
+
+    /**
+     * Adds and then removes a unit, leaving the cart as it was for the next call.
+     */
+    @Benchmark
+    public int addThenRemoveProduct() {
+        SalableProduct product = products.get(nextIndex());
+        cart.addProduct(product);
+        cart.removeProduct(product);
+        return cart.getUnitCount();
+    }
+
+    /**
+     * The lookup StoreFrontApp.getQuantityInCart performs.
+     */
+    @Benchmark
+    public int getQuantityInCart() {
+        return cart.quantityOf(products.get(nextIndex()));
+    }
+
+    private int nextIndex() {
+        next = next + 1 == distinctProducts ? 0 : next + 1;
+        return next;
+    }
+}
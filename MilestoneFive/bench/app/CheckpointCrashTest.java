@@ -0,0 +1,207 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A crash test for checkpoints. It runs an inventory in a child process that
+ * reserves stock one unit at a time while taking checkpoints back to back, kills
+ * the process with SIGKILL at a random moment, and then starts the inventory again
+ * in a second child process to check that every reservation the first one
+ * acknowledged survived. Most kills land while a snapshot is being written.
+ *
+ * Every other round the current snapshot is also deleted before the restart, the
+ * state a crash between moving the old snapshot aside and moving the new one in
+ * used to leave, so recovery has to come from the previous snapshot and the
+ * journal instead of falling back to the JSON file. It is only deleted while a
+ * previous snapshot exists, as it did in that state; a kill just after a
+ * checkpoint dropped the old previous snapshot leaves the current one as the only
+ * copy. A round whose kill itself left no current snapshot behind reports it as
+ * missing.
+ *
+ * Each child runs in a scratch directory holding its own src/app/inventoryone.json,
+ * so the real inventory is never touched.
+ *
+ * Usage: java app.CheckpointCrashTest [rounds] [productCount]
+ */
+public class CheckpointCrashTest {
+    private static final int STOCK = 1_000_000; // units of every product, enough never to run out
+    private static final String RESERVED = "reserved"; // printed by the child once a reservation is durable
+    private static final String TOTAL = "total "; // printed by the verifying child, followed by the units in stock
+
+    /**
+     * Runs the crash test, or one of its child processes when the first argument
+     * is "run" or "verify".
+     *
+     * @param args optional round count (20) and product count (50000)
+     * @throws IOException if the scratch directory or a child process fails
+     * @throws InterruptedException if the test is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("run")) {
+            run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("verify")) {
+            verify();
+            return;
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        File dir = Files.createTempDirectory("inventory-crash").toFile();
+        File appDir = new File(dir, "src/app");
+        appDir.mkdirs();
+        List<SalableProduct> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(new SalableProduct("Product " + i, "A product for the crash test.", 1.0, STOCK));
+        }
+        new ObjectMapper().writeValue(new File(appDir, "inventoryone.json"), products);
+        File snapshot = InventorySnapshot.fileFor(new File(appDir, "inventoryone.json"), InventorySnapshot.Format.CBOR);
+        File previous = new InventorySnapshot(snapshot, InventorySnapshot.Format.CBOR).previous().getFile();
+
+        long expected = (long) STOCK * productCount;
+        Random random = new Random(42);
+        int failures = 0;
+        for (int round = 1; round <= rounds; round++) {
+            long acknowledged = runAndKill(dir, 300 + random.nextInt(1200));
+            String state = !snapshot.isFile() ? "missing"
+                    : round % 2 != 0 ? "kept"
+                    : !previous.isFile() ? "kept, no previous to fall back on"
+                    : snapshot.delete() ? "deleted" : "kept";
+            long total = runVerify(dir);
+            expected -= acknowledged;
+            // the reservation in flight at the kill may or may not have reached the journal
+            boolean ok = total == expected || total == expected - 1;
+            System.out.printf("round %2d: %,6d reservations acknowledged, snapshot %s, %,d units recovered, %s%n",
+                    round, acknowledged, state, total, ok ? "ok" : "LOST, expected " + expected);
+            if (!ok) {
+                failures++;
+            }
+            expected = total;
+        }
+        System.out.println(failures == 0 ? "No acknowledged reservation was lost." : failures + " rounds lost reservations.");
+
+        for (File file : appDir.listFiles()) {
+            file.delete();
+        }
+        appDir.delete();
+        new File(dir, "src").delete();
+        dir.delete();
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts a child that reserves and checkpoints, and kills it after a while.
+     *
+     * @param dir the scratch directory
+     * @param millis how long to let it run once it has loaded
+     * @return the number of reservations it acknowledged
+     */
+    private static long runAndKill(File dir, long millis) throws IOException, InterruptedException {
+        Process child = start(dir, "run");
+        BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+        long acknowledged = 0;
+        long deadline = 0;
+        String line;
+        while ((line = out.readLine()) != null) {
+            if (line.equals(RESERVED)) {
+                acknowledged++;
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                } else if (System.nanoTime() > deadline) {
+                    child.toHandle().destroyForcibly(); // unlike Process.destroyForcibly, leaves the pipe open to drain
+                    break;
+                }
+            }
+        }
+        // reservations acknowledged before the kill may still be in the pipe
+        while ((line = out.readLine()) != null) {
+            if (line.equals(RESERVED)) {
+                acknowledged++;
+            }
+        }
+        child.waitFor();
+        return acknowledged;
+    }
+
+    /**
+     * Starts a child that recovers the inventory and reports the units in stock.
+     *
+     * @param dir the scratch directory
+     * @return the units in stock after recovery
+     */
+    private static long runVerify(File dir) throws IOException, InterruptedException {
+        Process child = start(dir, "verify");
+        BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+        long total = -1;
+        String line;
+        while ((line = out.readLine()) != null) {
+            if (line.startsWith(TOTAL)) {
+                total = Long.parseLong(line.substring(TOTAL.length()));
+            }
+        }
+        if (child.waitFor() != 0 || total < 0) {
+            throw new IOException("Recovery failed with exit code " + child.exitValue());
+        }
+        return total;
+    }
+
+    private static Process start(File dir, String mode) throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), CheckpointCrashTest.class.getName(), mode)
+                .directory(dir)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Child: loads the inventory, then reserves one unit of a random product at a
+     * time, printing each once it is durable, while another thread takes
+     * checkpoints back to back. Runs until it is killed.
+     */
+    private static void run() {
+        InventoryManager<SalableProduct> inventoryManager = new InventoryManager<>();
+        inventoryManager.initInventory();
+        List<SalableProduct> products = new ArrayList<>(inventoryManager.getInventory());
+        Thread checkpointer = new Thread(() -> {
+            while (true) {
+                inventoryManager.saveSnapshot();
+            }
+        }, "crash-test-checkpointer");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+        Random random = new Random();
+        while (true) {
+            if (inventoryManager.tryReserve(products.get(random.nextInt(products.size())).getName(), 1)) {
+                System.out.println(RESERVED);
+            }
+        }
+    }
+
+    /**
+     * Child: loads the inventory and prints the units in stock.
+     */
+    private static void verify() {
+        InventoryManager<SalableProduct> inventoryManager = new InventoryManager<>();
+        inventoryManager.initInventory();
+        long total = 0;
+        for (SalableProduct product : inventoryManager.getInventory()) {
+            total += product.getQuantity();
+        }
+        inventoryManager.closeJournal();
+        System.out.println(TOTAL + total);
+    }
+}
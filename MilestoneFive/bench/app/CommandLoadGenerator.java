@@ -0,0 +1,111 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load generator for the store logic. It replays synthetic shopper sessions
+ * through a CommandEngine on several threads against one shared inventory, with
+ * no console or network in the way, and reports operations per second and
+ * latency percentiles.
+ *
+ * Each session is a fresh cart running a short script of text commands: view a page
+ * of the inventory, buy two products in one order, cancel one, show the cart and
+ * empty it. The script returns every unit it buys, so stock levels hold steady
+ * however long the generator runs.
+ *
+ * Usage: java app.CommandLoadGenerator [sessions] [threads] [productCount]
+ */
+public class CommandLoadGenerator {
+    private static final String[] ORDERS = { "name", "name-desc", "price", "price-desc" };
+
+    /**
+     * Runs the sessions and prints the results.
+     *
+     * @param args optional session count (one million), thread count (the number of
+     *        processors) and product count (100000)
+     * @throws InterruptedException if the run is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int productCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        InventoryManager<SalableProduct> inventoryManager = new InventoryManager<>();
+        for (SalableProduct product : SyntheticCatalog.generate(productCount)) {
+            inventoryManager.addProduct(product);
+        }
+        long valueBefore = inventoryManager.getTotalValueCents();
+        CommandEngine<SalableProduct> engine = new CommandEngine<>(inventoryManager);
+
+        AtomicLong nextSession = new AtomicLong();
+        LatencyHistogram[] histograms = new LatencyHistogram[threadCount];
+        long[] rejected = new long[threadCount];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int index = t;
+            histograms[t] = new LatencyHistogram();
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(index);
+                long session;
+                while ((session = nextSession.getAndIncrement()) < sessions) {
+                    rejected[index] += runSession(engine, random, productCount, histograms[index]);
+                }
+            }, "shopper-" + t));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        LatencyHistogram all = new LatencyHistogram();
+        long rejectedTotal = 0;
+        for (int t = 0; t < threadCount; t++) {
+            all.merge(histograms[t]);
+            rejectedTotal += rejected[t];
+        }
+        System.out.printf("%,d sessions on %d threads against %,d products%n", sessions, threadCount, productCount);
+        System.out.printf("%,d operations in %,d ms: %,.0f operations/s, %,.0f sessions/s%n",
+                all.count(), elapsed / 1_000_000, all.count() / (elapsed / 1e9), sessions / (elapsed / 1e9));
+        System.out.printf("latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                all.percentile(50) / 1e3, all.percentile(90) / 1e3, all.percentile(99) / 1e3,
+                all.percentile(99.9) / 1e3, all.percentile(100) / 1e3);
+        System.out.printf("rejected: %,d  stock value unchanged: %b%n", rejectedTotal,
+                inventoryManager.getTotalValueCents() == valueBefore);
+    }
+
+    /**
+     * Runs one shopper session, timing each command.
+     *
+     * @return the number of commands that did not succeed
+     */
+    private static int runSession(CommandEngine<SalableProduct> engine, SplittableRandom random, int productCount,
+            LatencyHistogram histogram) {
+        ShoppingCart<SalableProduct> cart = new ShoppingCart<>();
+        String first = "Product " + random.nextInt(productCount);
+        String second = "Product " + random.nextInt(productCount);
+        String[] script = {
+            "view " + ORDERS[random.nextInt(ORDERS.length)] + " 10",
+            "purchase " + first + ", 2 " + second,
+            "cancel " + first,
+            "cart",
+            "empty",
+        };
+        int failed = 0;
+        for (String command : script) {
+            long begin = System.nanoTime();
+            CommandResult<SalableProduct> result = engine.execute(cart, command);
+            histogram.record(System.nanoTime() - begin);
+            if (!result.isSuccess()) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+}
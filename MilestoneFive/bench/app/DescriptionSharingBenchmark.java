@@ -0,0 +1,137 @@
+package app;
+
+import java.util.SplittableRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A small command line benchmark that measures the heap taken by the names and
+ * descriptions of a synthetic catalog, stored two ways: a String per product
+ * field as parsing produces them, and with equal descriptions sharing one String
+ * as initInventory loads them. Only loading shares descriptions, whether from the
+ * JSON file or a snapshot; descriptions set later are not shared, and snapshot
+ * files store every description in full.
+ *
+ * Names are unique; descriptions are drawn with a skew from a few thousand
+ * variants, as in a catalog built from templates. Sizes are measured as the growth
+ * of the used heap after garbage collection, so they include every header and
+ * reference.
+ *
+ * It measures the heap rather than time, so it is not a JMH benchmark, but it lives
+ * in bench/ with them and is compiled by the same profile.
+ *
+ * Usage: java app.DescriptionSharingBenchmark [productCount]
+ */
+public class DescriptionSharingBenchmark {
+    private static final String[] ADJECTIVES = { "Iron", "Steel", "Mithril", "Ancient", "Blessed", "Cursed", "Rusty", "Royal" };
+    private static final String[] ITEMS = { "Sword", "Axe", "Dagger", "Shield", "Helmet", "Breastplate", "Potion", "Elixir" };
+    private static final String[] OPENINGS = {
+        "A strong and sturdy", "A lightweight", "A finely crafted", "A battle-worn", "An enchanted", "A common",
+    };
+    private static final String[] CLOSINGS = {
+        "forged by master smiths.", "favored by the royal guard.", "that heals minor wounds.", "with moderate protection.",
+        "sold at every market.", "found deep in the old mines.", "that glows faintly at night.", "worn by travelling knights.",
+    };
+    private static final int READS = 1_000_000; // product reads timed per configuration
+
+    /**
+     * Builds the catalog in each configuration and prints the bytes per product.
+     *
+     * @param args an optional product count, five million by default
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        String[] templates = descriptions();
+        System.out.printf("%,d products, %,d distinct descriptions%n", count, templates.length);
+        System.out.printf("%-22s %14s %12s %10s%n", "storage", "bytes", "per product", "read ns");
+
+        measureStrings("String per field", count, templates, true);
+        measureStrings("shared descriptions", count, templates, false);
+    }
+
+    /**
+     * Builds the catalog as String arrays and reports its size.
+     *
+     * @param copy true to give every product its own copy of its description, as a parser does
+     */
+    private static void measureStrings(String label, int count, String[] templates, boolean copy) {
+        long base = usedHeap();
+        String[] names = new String[count];
+        String[] descriptions = new String[count];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < count; i++) {
+            names[i] = name(i);
+            String description = template(templates, random);
+            descriptions[i] = copy ? new String(description) : description;
+        }
+        report(label, usedHeap() - base, count, i -> names[i].length() + descriptions[i].length());
+    }
+
+    /**
+     * Returns the unique name of product i.
+     */
+    private static String name(int i) {
+        return ADJECTIVES[i % ADJECTIVES.length] + " " + ITEMS[i / ADJECTIVES.length % ITEMS.length] + " #" + i;
+    }
+
+    /**
+     * Builds every description variant from the templates.
+     */
+    private static String[] descriptions() {
+        String[] variants = new String[OPENINGS.length * ITEMS.length * CLOSINGS.length * 6];
+        int next = 0;
+        for (String opening : OPENINGS) {
+            for (String item : ITEMS) {
+                for (String closing : CLOSINGS) {
+                    for (int level = 1; level <= 6; level++) {
+                        variants[next++] = opening + " " + item.toLowerCase() + " of grade " + level + ", " + closing;
+                    }
+                }
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Picks a description, the first variants far more often than the last.
+     */
+    private static String template(String[] templates, SplittableRandom random) {
+        double skewed = random.nextDouble() * random.nextDouble();
+        return templates[(int) (skewed * templates.length)];
+    }
+
+    /**
+     * Prints the size of a configuration and the average time to read the name
+     * and description of a product from it.
+     *
+     * @param read reads the strings of product i and returns their total length
+     */
+    private static void report(String label, long bytes, int count, IntUnaryOperator read) {
+        SplittableRandom random = new SplittableRandom(7);
+        long checksum = 0;
+        long start = 0;
+        for (int i = 0; i < 2 * READS; i++) {
+            if (i == READS) {
+                start = System.nanoTime(); // the first half warms up
+            }
+            checksum += read.applyAsInt(random.nextInt(count));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-22s %,14d %12.1f %10.1f%n", label, bytes, (double) bytes / count, (double) elapsed / READS);
+        if (checksum == 0) {
+            System.out.println("no strings read");
+        }
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
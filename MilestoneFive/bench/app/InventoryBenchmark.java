@@ -0,0 +1,103 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks name lookup and the four sort methods of InventoryManager. The sorts
+ * reorder the shared inventory list, so it is put back in the same shuffled order
+ * before every call; otherwise every call after the first would sort sorted input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private InventoryManager<SalableProduct> manager;
+    private List<SalableProduct> shuffled; // the inventory in the order every sort starts from
+    private String[] names; // lookup keys, in a different case than stored
+    private int next;
+
+    @Setup
+    public void setUp() {
+        manager = new InventoryManager<>();
+        List<SalableProduct> products = SyntheticCatalog.generate(size);
+        shuffled = new ArrayList<>(products);
+        Collections.shuffle(shuffled, new Random(42)); // generated products come sorted by name
+        for (SalableProduct product : shuffled) {
+            manager.addProduct(product);
+        }
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = products.get((int) ((long) i * size / names.length)).getName().toUpperCase();
+        }
+    }
+
+    @Benchmark
+    public SalableProduct getProductByName() {
+        next = (next + 1) & (names.length - 1);
+        return manager.getProductByName(names[next]);
+    }
+
+    @Benchmark
+    public List<SalableProduct> sortByProductNameAscending(Unsorted unsorted) {
+        manager.sortByProductNameAscending();
+        return manager.getInventory();
+    }
+
+    @Benchmark
+    public List<SalableProduct> sortByProductNameDescending(Unsorted unsorted) {
+        manager.sortByProductNameDescending();
+        return manager.getInventory();
+    }
+
+    @Benchmark
+    public List<SalableProduct> sortByProductPriceAscending(Unsorted unsorted) {
+        manager.sortByProductPriceAscending();
+        return manager.getInventory();
+    }
+
+    @Benchmark
+    public List<SalableProduct> sortByProductPriceDescending(Unsorted unsorted) {
+        manager.sortByProductPriceDescending();
+        return manager.getInventory();
+    }
+
+    /**
+     * Puts the inventory back in its shuffled order before each sort. It is a state
+     * of its own so that the lookup benchmark does not pay for it.
+     */
+    @State(Scope.Thread)
+    public static class Unsorted {
+
+        @Setup(Level.Invocation)
+        public void restore(InventoryBenchmark benchmark) {
+            List<SalableProduct> inventory = benchmark.manager.getInventory();
+            for (int i = 0; i < inventory.size(); i++) {
+                inventory.set(i, benchmark.shuffled.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Benchmarks the two ways initInventory fills the inventory: streaming the JSON file
+ * into a fresh InventoryManager on a cold start, and reading the CBOR snapshot on a
+ * warm start. The loader and the snapshot are called directly, because initInventory
+ * itself reads the application's own inventory file and also rewrites its snapshot
+ * and journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private File dir;
+    private File json;
+    private InventorySnapshot snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<SalableProduct> products = SyntheticCatalog.generate(size);
+        dir = Files.createTempDirectory("inventory-jmh").toFile();
+        json = new File(dir, "inventory.json");
+        new ObjectMapper().writeValue(json, products);
+        InventorySnapshot.Format format = InventorySnapshot.Format.CBOR;
+        snapshot = new InventorySnapshot(InventorySnapshot.fileFor(json, format), format);
+        snapshot.write(products);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public InventoryManager<SalableProduct> loadJson() throws IOException {
+        InventoryManager<SalableProduct> manager = new InventoryManager<>();
+        new InventoryLoader().load(json, SalableProduct.class, manager::addProduct, 0, null);
+        return manager;
+    }
+
+    @Benchmark
+    public InventoryManager<SalableProduct> readSnapshot() throws IOException {
+        InventoryManager<SalableProduct> manager = new InventoryManager<>();
+        snapshot.read(SalableProduct.class, manager::addProduct, 0, null);
+        return manager;
+    }
+}
@@ -0,0 +1,72 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A small command line benchmark that compares load time and file size of the
+ * JSON inventory format against the CBOR and MessagePack snapshot formats.
+ *
+ * Usage: java app.SnapshotBenchmark [productCount]
+ */
+public class SnapshotBenchmark {
+    private static final int RUNS = 3; // timed loads per format, the fastest is reported
+
+    /**
+     * Generates a synthetic catalog, writes it in every format and times loading each file.
+     *
+     * @param args an optional product count, one million by default
+     * @throws IOException if a benchmark file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<SalableProduct> products = SyntheticCatalog.generate(count);
+        File dir = Files.createTempDirectory("inventory-bench").toFile();
+
+        File json = new File(dir, "inventory.json");
+        new ObjectMapper().writeValue(json, products);
+
+        System.out.printf("%,d products%n", count);
+        System.out.printf("%-8s %14s %12s%n", "format", "bytes", "load ms");
+        report("JSON", json, () -> new InventoryLoader().load(json, SalableProduct.class, p -> { }, 0, null));
+        for (InventorySnapshot.Format format : InventorySnapshot.Format.values()) {
+            InventorySnapshot snapshot = new InventorySnapshot(InventorySnapshot.fileFor(json, format), format);
+            snapshot.write(products);
+            report(format.name(), snapshot.getFile(), () -> snapshot.read(SalableProduct.class, p -> { }, 0, null));
+        }
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * A load of one benchmark file.
+     */
+    private interface Load {
+        long run() throws IOException;
+    }
+
+    /**
+     * Times the load several times and prints the file size and the fastest run.
+     *
+     * @param label the name of the format
+     * @param file the file being loaded
+     * @param load the load to time
+     * @throws IOException if the file cannot be read
+     */
+    private static void report(String label, File file, Load load) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            load.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-8s %,14d %,12d%n", label, file.length(), best / 1_000_000);
+    }
+}
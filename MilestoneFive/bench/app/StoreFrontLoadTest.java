@@ -0,0 +1,143 @@
+package app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A local load test for StoreFrontServer. It serves a synthetic catalog on a free
+ * port and runs many concurrent shoppers against it, each on its own virtual thread
+ * and keep-alive connection, then reports throughput and latency percentiles.
+ *
+ * Each shopper creates a cart and then repeatedly looks up a product, buys one
+ * unit of it and cancels the purchase.
+ *
+ * Usage: java app.StoreFrontLoadTest [shoppers] [requestsPerShopper] [productCount]
+ */
+public class StoreFrontLoadTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Runs the load test and prints the results.
+     *
+     * @param args optional shopper count (2000), requests per shopper (30) and product count (100000)
+     * @throws IOException if the server cannot be started
+     * @throws InterruptedException if the test is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int productCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        InventoryManager<SalableProduct> inventoryManager = new InventoryManager<>();
+        for (SalableProduct product : SyntheticCatalog.generate(productCount)) {
+            inventoryManager.addProduct(product);
+        }
+        StoreFrontServer server = new StoreFrontServer(inventoryManager, 0);
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[][] latencies = new long[shoppers][];
+        AtomicLongArray statuses = new AtomicLongArray(6); // responses counted by status class, 1xx to 5xx; 0 counts failures
+        CountDownLatch go = new CountDownLatch(1);
+        for (int i = 0; i < shoppers; i++) {
+            int shopper = i;
+            threads.execute(() -> latencies[shopper] = shop(client, base, new Random(shopper), requests, productCount, statuses, go));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        threads.shutdown();
+        threads.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        server.stop(0);
+
+        long[] all = Arrays.stream(latencies).filter(l -> l != null).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%,d shoppers x %,d requests against %,d products%n", shoppers, requests, productCount);
+        System.out.printf("Java %s, %d CPUs, one virtual thread per shopper and per exchange%n",
+                Runtime.version(), Runtime.getRuntime().availableProcessors());
+        System.out.printf("%,d requests in %,d ms: %,.0f requests/s%n", all.length, elapsed / 1_000_000, all.length / (elapsed / 1e9));
+        System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 100));
+        System.out.printf("responses: 2xx %,d  4xx %,d  5xx %,d  failed %,d%n",
+                statuses.get(2), statuses.get(4), statuses.get(5), statuses.get(0));
+        System.out.println(server.getCartMetrics());
+    }
+
+    /**
+     * Runs one shopper: creates a cart, then looks up, buys and cancels products.
+     *
+     * @return the latency of every request in nanoseconds
+     */
+    private static long[] shop(HttpClient client, String base, Random random, int requests, int productCount,
+            AtomicLongArray statuses, CountDownLatch go) {
+        long[] latencies = new long[requests];
+        try {
+            go.await();
+            HttpResponse<String> created = send(client, HttpRequest.newBuilder(URI.create(base + "/carts")).POST(HttpRequest.BodyPublishers.noBody()).build(), statuses);
+            String cart = base + "/carts/" + MAPPER.readTree(created.body()).get("cart").asText();
+            String name = null;
+            for (int i = 0; i < requests; i++) {
+                HttpRequest request;
+                switch (i % 3) {
+                case 0:
+                    name = URLEncoder.encode("Product " + random.nextInt(productCount), StandardCharsets.UTF_8);
+                    request = HttpRequest.newBuilder(URI.create(base + "/products/" + name.replace("+", "%20"))).GET().build();
+                    break;
+                case 1:
+                    request = HttpRequest.newBuilder(URI.create(cart + "/purchase?product=" + name)).POST(HttpRequest.BodyPublishers.noBody()).build();
+                    break;
+                default:
+                    request = HttpRequest.newBuilder(URI.create(cart + "/cancel?product=" + name)).POST(HttpRequest.BodyPublishers.noBody()).build();
+                    break;
+                }
+                long start = System.nanoTime();
+                send(client, request, statuses);
+                latencies[i] = System.nanoTime() - start;
+            }
+        } catch (IOException e) {
+            statuses.incrementAndGet(0);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return latencies;
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request, AtomicLongArray statuses)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        statuses.incrementAndGet(Math.min(response.statusCode() / 100, 5));
+        return response;
+    }
+
+    /**
+     * Returns a percentile of sorted latencies in milliseconds.
+     *
+     * @param sorted latencies in nanoseconds, in ascending order
+     * @param percent the percentile, from 0 to 100
+     * @return the latency at that percentile in milliseconds
+     */
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
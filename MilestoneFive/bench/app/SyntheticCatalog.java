@@ -0,0 +1,35 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SyntheticCatalog class builds the catalogs the benchmarks and load
+ * harnesses run against, so they all measure the same products.
+ */
+final class SyntheticCatalog {
+    private static final String[] DESCRIPTIONS = {
+        "A strong and sturdy armor.",
+        "A lightweight armor with moderate protection.",
+        "A small potion that heals minor wounds.",
+        "A sharp blade forged by master smiths.",
+    };
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Builds a list of synthetic products with repeating descriptions and varied prices.
+     *
+     * @param count the number of products to build
+     * @return the generated products
+     */
+    static List<SalableProduct> generate(int count) {
+        List<SalableProduct> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new SalableProduct("Product " + i, DESCRIPTIONS[i % DESCRIPTIONS.length],
+                    (i % 50_000) / 100.0 + 1.0, i % 100));
+        }
+        return products;
+    }
+}
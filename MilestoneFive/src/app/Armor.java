@@ -6,6 +6,7 @@ package app;
  */
 public class Armor extends SalableProduct implements Comparable<SalableProduct> {
     private int defense; 
+    private String fullDescription; // getDescription's result, built on first use and cleared when the defense or description changes
 
     /**
      * Constructs a new Armor object.
@@ -34,6 +35,17 @@ public class Armor extends SalableProduct implements Comparable<SalableProduct>
      */
     public void setDefense(int defense) {
         this.defense = defense;
+        this.fullDescription = null;
+    }
+
+    /**
+     * Changes the plain description, dropping the cached full description.
+     * @param description the new description
+     */
+    @Override
+    void setDescription(String description) {
+        super.setDescription(description);
+        this.fullDescription = null;
     }
 
     /**
@@ -66,7 +78,7 @@ public class Armor extends SalableProduct implements Comparable<SalableProduct>
      */
     @Override
     public String toString() {
-        return String.format("%s - $%.2f - %d in stock - Defense: %d", getName(), getPrice(), getQuantity(), defense);
+        return getName() + " - $" + Money.format(getPriceCents()) + " - " + getQuantity() + " in stock - Defense: " + defense;
     }
 
     /**
@@ -74,6 +86,11 @@ public class Armor extends SalableProduct implements Comparable<SalableProduct>
      * @return the description of the armor
      */
     public String getDescription() {
-        return super.getDescription() + " - Defense Power: " + defense;
+        String description = fullDescription;
+        if (description == null) {
+            description = super.getDescription() + " - Defense Power: " + defense;
+            fullDescription = description;
+        }
+        return description;
     }
 }
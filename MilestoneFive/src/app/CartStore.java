@@ -0,0 +1,432 @@
+package app;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The CartStore class keeps one shopping cart per shopper session, keyed by a
+ * session id, for a server with many concurrent shoppers.
+ *
+ * Memory is bounded: when the store is full the least recently used cart is
+ * evicted, and a cart left idle for longer than the idle timeout is evicted too.
+ * Every unit held by an evicted cart is given back to the inventory, so abandoned
+ * sessions do not keep stock reserved.
+ *
+ * Sessions are spread over independently locked stripes, each an access-ordered
+ * map, so shoppers in different stripes never wait on each other. The stripe locks
+ * only guard the maps; a cart is guarded by its own monitor, which callers hold
+ * while they use it and which eviction takes before draining the cart.
+ *
+ * @param <T> the type of product
+ */
+public class CartStore<T extends SalableProduct> {
+    private static final int STRIPES = 64; // a power of two
+
+    private final InventoryManager<T> inventoryManager;
+    private final Stripe<T>[] stripes;
+    private final int stripeCapacity; // most sessions one stripe holds
+    private final long idleTimeoutNanos;
+    private final AtomicInteger resident = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final Object sweeperMonitor = new Object();
+    private ScheduledExecutorService sweeper; // evicts idle sessions in the background, or null
+
+    /**
+     * Constructs a new CartStore object returning the stock of evicted carts to the
+     * given inventory.
+     *
+     * @param inventoryManager the inventory the carts reserve stock from
+     * @param maxCarts the most carts kept, rounded up to a multiple of the stripe count
+     * @param idleTimeout how long a cart may go unused before it is evicted
+     * @param unit the unit of the idle timeout
+     * @throws IllegalArgumentException if maxCarts or idleTimeout is not positive
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public CartStore(InventoryManager<T> inventoryManager, int maxCarts, long idleTimeout, TimeUnit unit) {
+        if (maxCarts <= 0) {
+            throw new IllegalArgumentException("Cart limit must be positive: " + maxCarts);
+        }
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeout);
+        }
+        this.inventoryManager = inventoryManager;
+        this.stripeCapacity = (maxCarts + STRIPES - 1) / STRIPES;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /**
+     * Opens a new session with an empty cart, evicting the least recently used cart
+     * of its stripe if the stripe is full.
+     *
+     * @return the new session
+     */
+    public Session<T> create() {
+        Session<T> session = new Session<>(UUID.randomUUID().toString());
+        Stripe<T> stripe = stripeFor(session.id);
+        Session<T> evicted = null;
+        stripe.lock.lock();
+        try {
+            session.lastAccessNanos = System.nanoTime();
+            stripe.sessions.put(session.id, session);
+            if (stripe.sessions.size() > stripeCapacity) {
+                Iterator<Session<T>> eldest = stripe.sessions.values().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            } else {
+                resident.incrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        created.increment();
+        if (evicted != null) {
+            sizeEvictions.increment();
+            drain(evicted);
+        }
+        return session;
+    }
+
+    /**
+     * Returns a session and marks it as just used. A session idle for longer than
+     * the idle timeout is evicted here rather than returned.
+     *
+     * @param id the session id
+     * @return the session, or null if there is no such session or it has expired
+     */
+    public Session<T> get(String id) {
+        Stripe<T> stripe = stripeFor(id);
+        Session<T> session;
+        boolean expired = false;
+        stripe.lock.lock();
+        try {
+            session = stripe.sessions.get(id);
+            if (session != null) {
+                long now = System.nanoTime();
+                if (now - session.lastAccessNanos > idleTimeoutNanos) {
+                    stripe.sessions.remove(id);
+                    resident.decrementAndGet();
+                    expired = true;
+                } else {
+                    session.lastAccessNanos = now;
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (expired) {
+            idleEvictions.increment();
+            drain(session);
+            session = null;
+        }
+        if (session == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return session;
+    }
+
+    /**
+     * Ends a session, returning every unit in its cart to stock.
+     *
+     * @param id the session id
+     * @return true if the session existed
+     */
+    public boolean close(String id) {
+        Stripe<T> stripe = stripeFor(id);
+        Session<T> session;
+        stripe.lock.lock();
+        try {
+            session = stripe.sessions.remove(id);
+            if (session != null) {
+                resident.decrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (session == null) {
+            return false;
+        }
+        drain(session);
+        return true;
+    }
+
+    /**
+     * Evicts every session that has been idle for longer than the idle timeout.
+     *
+     * @return the number of sessions evicted
+     */
+    public int evictIdle() {
+        int evictedCount = 0;
+        List<Session<T>> evicted = new ArrayList<>();
+        for (Stripe<T> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                long now = System.nanoTime();
+                // the map is in access order, so the idle sessions are at its head
+                Iterator<Session<T>> sessions = stripe.sessions.values().iterator();
+                while (sessions.hasNext()) {
+                    Session<T> session = sessions.next();
+                    if (now - session.lastAccessNanos <= idleTimeoutNanos) {
+                        break;
+                    }
+                    sessions.remove();
+                    resident.decrementAndGet();
+                    evicted.add(session);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+            // returning stock may wait on a journal sync, so it is done outside the stripe lock
+            for (Session<T> session : evicted) {
+                drain(session);
+            }
+            idleEvictions.add(evicted.size());
+            evictedCount += evicted.size();
+            evicted.clear();
+        }
+        return evictedCount;
+    }
+
+    /**
+     * Starts evicting idle sessions in the background at a fixed interval. Any
+     * sweeper already running is stopped.
+     *
+     * @param period the time between sweeps
+     * @param unit the unit of the period
+     */
+    public void startSweeper(long period, TimeUnit unit) {
+        synchronized (sweeperMonitor) {
+            stopSweeper();
+            sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "cart-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, unit);
+        }
+    }
+
+    /**
+     * Stops the background sweeper, if one is running.
+     */
+    public void stopSweeper() {
+        synchronized (sweeperMonitor) {
+            if (sweeper != null) {
+                sweeper.shutdown();
+                sweeper = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of sessions held.
+     *
+     * @return the resident session count
+     */
+    public int size() {
+        return resident.get();
+    }
+
+    /**
+     * Returns the store's counters as they are now.
+     *
+     * @return a snapshot of the metrics
+     */
+    public Metrics getMetrics() {
+        return new Metrics(hits.sum(), misses.sum(), created.sum(), sizeEvictions.sum(), idleEvictions.sum(), resident.get());
+    }
+
+    /**
+     * Closes a session that has left the store and returns the stock its cart held.
+     *
+     * @param session the removed session
+     */
+    private void drain(Session<T> session) {
+        Map<T, Integer> held = new LinkedHashMap<>();
+        synchronized (session.cart) {
+            session.open = false;
+            for (ShoppingCart.LineItem<T> line : session.cart.getLineItems()) {
+                held.put(line.getProduct(), line.getUnits());
+            }
+            for (Map.Entry<T, Integer> entry : held.entrySet()) {
+                session.cart.removeProduct(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            inventoryManager.releaseAll(held);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error returning stock of cart " + session.id + ": " + e.getMessage());
+        }
+    }
+
+    private Stripe<T> stripeFor(String id) {
+        int hash = id.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * A shopper session: its id and its cart.
+     *
+     * Callers hold the cart's monitor while they use it and check isOpen under it:
+     * a session that has been evicted or closed has had its stock returned, and
+     * anything added to its cart afterwards would never be returned.
+     *
+     * @param <T> the type of product
+     */
+    public static final class Session<T extends SalableProduct> {
+        private final String id;
+        private final ShoppingCart<T> cart = new ShoppingCart<>();
+        private long lastAccessNanos; // guarded by the stripe lock
+        private boolean open = true; // guarded by the cart's monitor
+
+        private Session(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns the session id.
+         *
+         * @return the id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the session's cart.
+         *
+         * @return the cart
+         */
+        public ShoppingCart<T> getCart() {
+            return cart;
+        }
+
+        /**
+         * Returns whether the session is still in the store. Callers hold the cart's monitor.
+         *
+         * @return false once the session has been evicted or closed
+         */
+        public boolean isOpen() {
+            return open;
+        }
+    }
+
+    /**
+     * One stripe of the store: an access-ordered map and the lock guarding it.
+     */
+    private static final class Stripe<T extends SalableProduct> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, Session<T>> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * A snapshot of a CartStore's counters.
+     */
+    public static final class Metrics {
+        private final long hits;
+        private final long misses;
+        private final long created;
+        private final long sizeEvictions;
+        private final long idleEvictions;
+        private final int resident;
+
+        Metrics(long hits, long misses, long created, long sizeEvictions, long idleEvictions, int resident) {
+            this.hits = hits;
+            this.misses = misses;
+            this.created = created;
+            this.sizeEvictions = sizeEvictions;
+            this.idleEvictions = idleEvictions;
+            this.resident = resident;
+        }
+
+        /**
+         * Returns the number of lookups that found their session.
+         *
+         * @return the hit count
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Returns the number of lookups that found no session, or an expired one.
+         *
+         * @return the miss count
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Returns the share of lookups that found their session.
+         *
+         * @return the hit rate, from 0 to 1, or 0 if there were no lookups
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * Returns the number of sessions opened.
+         *
+         * @return the created count
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Returns the number of sessions evicted to stay within the cart limit.
+         *
+         * @return the size eviction count
+         */
+        public long getSizeEvictions() {
+            return sizeEvictions;
+        }
+
+        /**
+         * Returns the number of sessions evicted for being idle.
+         *
+         * @return the idle eviction count
+         */
+        public long getIdleEvictions() {
+            return idleEvictions;
+        }
+
+        /**
+         * Returns the number of sessions held.
+         *
+         * @return the resident session count
+         */
+        public int getResident() {
+            return resident;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("carts: resident %,d  created %,d  hit rate %.3f  evicted %,d (size) %,d (idle)",
+                    resident, created, getHitRate(), sizeEvictions, idleEvictions);
+        }
+    }
+}
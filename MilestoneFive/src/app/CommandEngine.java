@@ -0,0 +1,371 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The CommandEngine class runs store front commands against an inventory and a
+ * shopping cart without any console input or output, so the same store logic can
+ * be driven by the console, by tests or by a load generator.
+ *
+ * Commands are plain text:
+ * <pre>
+ * view [name|name-desc|price|price-desc] [limit]   list products, by name and 20 at a time by default
+ * purchase [quantity] name[, [quantity] name...]    reserve stock and add it to the cart, all items or none
+ * cancel [quantity] name                            remove units from the cart, all of them by default
+ * cart                                              list the cart contents
+ * empty                                             return everything in the cart to stock
+ * report [threshold]                                stock value and counts per type, listing products low on stock
+ * </pre>
+ * A leading number is read as a quantity unless the whole item names a product.
+ *
+ * Given StockHolds, the engine puts what it adds to a cart on hold, so units
+ * left in an abandoned cart go back to stock when the hold expires.
+ *
+ * The engine itself holds no state and may be shared between threads; each cart
+ * must only be used by one thread at a time.
+ *
+ * @param <T> the type of product
+ */
+public class CommandEngine<T extends SalableProduct> {
+    private static final int DEFAULT_VIEW_LIMIT = 20;
+    private static final int DEFAULT_LOW_STOCK = 5; // units at or below which a product is reported as low on stock
+
+    private final InventoryManager<T> inventoryManager;
+    private final StockHolds<T> stockHolds; // puts purchases on hold, or null to reserve them for good
+
+    /**
+     * Constructs a new CommandEngine object working on the given inventory.
+     *
+     * @param inventoryManager the inventory commands are run against
+     */
+    public CommandEngine(InventoryManager<T> inventoryManager) {
+        this(inventoryManager, null);
+    }
+
+    /**
+     * Constructs a new CommandEngine object working on the given inventory and
+     * putting purchases on hold.
+     *
+     * @param inventoryManager the inventory commands are run against
+     * @param stockHolds the holds purchases are put on, or null to reserve them for good
+     */
+    public CommandEngine(InventoryManager<T> inventoryManager, StockHolds<T> stockHolds) {
+        this.inventoryManager = inventoryManager;
+        this.stockHolds = stockHolds;
+    }
+
+    /**
+     * Parses and runs one command.
+     *
+     * @param cart the shopper's cart
+     * @param command the command text
+     * @return the outcome of the command
+     */
+    public CommandResult<T> execute(ShoppingCart<T> cart, String command) {
+        String text = command == null ? "" : command.trim();
+        int space = text.indexOf(' ');
+        String verb = (space < 0 ? text : text.substring(0, space)).toLowerCase(Locale.ROOT);
+        String argument = space < 0 ? "" : text.substring(space + 1).trim();
+        switch (verb) {
+        case "view":
+            return parseView(argument);
+        case "purchase":
+            return argument.indexOf(',') < 0 ? parseQuantityCommand(cart, argument, 1, true) : parseOrder(cart, argument);
+        case "cancel":
+            return parseQuantityCommand(cart, argument, Integer.MAX_VALUE, false);
+        case "cart":
+            return showCart(cart);
+        case "empty":
+            return empty(cart);
+        case "report":
+            return parseReport(argument);
+        default:
+            return CommandResult.invalid("Unknown command: " + text);
+        }
+    }
+
+    /**
+     * Lists products in the given order.
+     *
+     * @param order name, name-desc, price or price-desc
+     * @param limit the maximum number of products to list
+     * @return the listed products
+     */
+    public CommandResult<T> view(String order, int limit) {
+        Collection<T> products;
+        switch (order) {
+        case "name":
+            products = inventoryManager.getProductsByNameAscending();
+            break;
+        case "name-desc":
+            products = inventoryManager.getProductsByNameDescending();
+            break;
+        case "price":
+            products = inventoryManager.getProductsByPriceAscending();
+            break;
+        case "price-desc":
+            products = inventoryManager.getProductsByPriceDescending();
+            break;
+        default:
+            return CommandResult.invalid("Unknown sort order: " + order);
+        }
+        if (limit < 0) {
+            return CommandResult.invalid("Limit must not be negative: " + limit);
+        }
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        for (T product : products) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(product);
+        }
+        return CommandResult.ok("Inventory:", page);
+    }
+
+    /**
+     * Reserves units of a product and adds them to the cart.
+     *
+     * @param cart the shopper's cart
+     * @param name the product name
+     * @param quantity the number of units to buy
+     * @return the outcome of the purchase
+     */
+    public CommandResult<T> purchase(ShoppingCart<T> cart, String name, int quantity) {
+        if (quantity <= 0) {
+            return CommandResult.invalid("Quantity must be positive: " + quantity);
+        }
+        T product = inventoryManager.getProductByName(name);
+        if (product == null) {
+            return CommandResult.invalid("Invalid product name. Please try again.");
+        }
+        if (stockHolds != null) {
+            if (!stockHolds.hold(cart, product, quantity)) {
+                return CommandResult.rejected("Sorry, " + product.getName() + " is out of stock.");
+            }
+        } else if (inventoryManager.tryReserve(product, quantity)) {
+            cart.addProduct(product, quantity);
+        } else {
+            return CommandResult.rejected("Sorry, " + product.getName() + " is out of stock.");
+        }
+        return CommandResult.ok("Purchase successful. Thank you for shopping with us!");
+    }
+
+    /**
+     * Reserves a whole order and adds it to the cart in one step: either every item
+     * is bought or nothing is.
+     *
+     * @param cart the shopper's cart
+     * @param order the units to buy per product name
+     * @return the outcome of the purchase
+     */
+    public CommandResult<T> purchaseAll(ShoppingCart<T> cart, Map<String, Integer> order) {
+        Map<T, Integer> products = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> item : order.entrySet()) {
+            if (item.getValue() <= 0) {
+                return CommandResult.invalid("Quantity must be positive: " + item.getValue());
+            }
+            T product = inventoryManager.getProductByName(item.getKey());
+            if (product == null) {
+                return CommandResult.invalid("Invalid product name: " + item.getKey() + ". Please try again.");
+            }
+            products.merge(product, item.getValue(), Integer::sum);
+        }
+        boolean reserved = stockHolds != null ? stockHolds.holdAll(cart, products) : inventoryManager.reserveAll(products);
+        if (!reserved) {
+            StringBuilder shortItems = new StringBuilder();
+            for (Map.Entry<T, Integer> item : products.entrySet()) {
+                if (item.getKey().getQuantity() < item.getValue()) {
+                    shortItems.append(shortItems.length() == 0 ? "" : ", ").append(item.getKey().getName());
+                }
+            }
+            return CommandResult.rejected("Sorry, the order could not be filled. Not enough stock of: " + shortItems + ".");
+        }
+        if (stockHolds == null) {
+            for (Map.Entry<T, Integer> item : products.entrySet()) {
+                cart.addProduct(item.getKey(), item.getValue());
+            }
+        }
+        return CommandResult.ok("Purchase successful. Thank you for shopping with us!");
+    }
+
+    /**
+     * Removes units of a product from the cart and returns them to stock.
+     *
+     * @param cart the shopper's cart
+     * @param name the product name
+     * @param quantity the most units to return
+     * @return the outcome of the cancellation, with the refund in its message
+     */
+    public CommandResult<T> cancel(ShoppingCart<T> cart, String name, int quantity) {
+        if (quantity <= 0) {
+            return CommandResult.invalid("Quantity must be positive: " + quantity);
+        }
+        T product = inventoryManager.getProductByName(name);
+        if (product == null) {
+            return CommandResult.invalid("Invalid product name. Please try again.");
+        }
+        long totalBefore = cart.getTotalCents();
+        int removed = stockHolds != null ? stockHolds.release(cart, product, quantity) : cart.removeProduct(product, quantity);
+        if (removed == 0) {
+            return CommandResult.rejected("You do not have any " + product.getName() + " in your cart.");
+        }
+        if (stockHolds == null) {
+            inventoryManager.release(product, removed);
+        }
+        return CommandResult.ok(removed + " " + product.getName() + " returned for a total refund of $"
+                + Money.format(totalBefore - cart.getTotalCents()) + ".");
+    }
+
+    /**
+     * Lists the contents of the cart, one entry per distinct product.
+     *
+     * @param cart the shopper's cart
+     * @return the products in the cart and, in the message, the total
+     */
+    public CommandResult<T> showCart(ShoppingCart<T> cart) {
+        List<T> products = new ArrayList<>(cart.getLineItems().size());
+        for (ShoppingCart.LineItem<T> line : cart.getLineItems()) {
+            products.add(line.getProduct());
+        }
+        if (products.isEmpty()) {
+            return CommandResult.ok("The shopping cart is empty.", products);
+        }
+        return CommandResult.ok(cart.getUnitCount() + " items, total $" + cart.getTotal(), products);
+    }
+
+    /**
+     * Empties the cart and returns every unit in it to stock in one step.
+     *
+     * @param cart the shopper's cart
+     * @return the outcome of emptying the cart
+     */
+    public CommandResult<T> empty(ShoppingCart<T> cart) {
+        if (stockHolds != null) {
+            stockHolds.releaseAll(cart);
+            return CommandResult.ok("Cart is empty");
+        }
+        Map<T, Integer> held = new LinkedHashMap<>();
+        for (ShoppingCart.LineItem<T> line : cart.getLineItems()) {
+            held.put(line.getProduct(), line.getUnits());
+        }
+        for (Map.Entry<T, Integer> entry : held.entrySet()) {
+            cart.removeProduct(entry.getKey(), entry.getValue());
+        }
+        inventoryManager.releaseAll(held);
+        return CommandResult.ok("Cart is empty");
+    }
+
+    /**
+     * Summarizes the inventory and lists the products low on stock.
+     *
+     * @param lowStockThreshold products with at most this many units are listed
+     * @return the summary in the message and the low-stock products
+     */
+    public CommandResult<T> report(int lowStockThreshold) {
+        InventoryReport<T> report = inventoryManager.analyze(lowStockThreshold);
+        return CommandResult.ok(report.toString(), report.getLowStock());
+    }
+
+    /**
+     * Parses the argument of a report command: an optional low-stock threshold.
+     */
+    private CommandResult<T> parseReport(String argument) {
+        if (argument.isEmpty()) {
+            return report(DEFAULT_LOW_STOCK);
+        }
+        Integer threshold = parseQuantity(argument);
+        if (threshold == null) {
+            return CommandResult.invalid("Invalid threshold: " + argument);
+        }
+        return report(threshold);
+    }
+
+    /**
+     * Parses the arguments of a view command: an optional order and an optional limit.
+     */
+    private CommandResult<T> parseView(String argument) {
+        String order = "name";
+        int limit = DEFAULT_VIEW_LIMIT;
+        for (String token : argument.isEmpty() ? new String[0] : argument.split("\\s+")) {
+            if (Character.isDigit(token.charAt(0))) {
+                Integer parsed = parseQuantity(token);
+                if (parsed == null) {
+                    return CommandResult.invalid("Invalid limit: " + token);
+                }
+                limit = parsed;
+            } else {
+                order = token.toLowerCase(Locale.ROOT);
+            }
+        }
+        return view(order, limit);
+    }
+
+    /**
+     * Parses the arguments of a purchase or cancel command, "[quantity] name", and runs it.
+     */
+    private CommandResult<T> parseQuantityCommand(ShoppingCart<T> cart, String argument, int defaultQuantity, boolean purchase) {
+        if (argument.isEmpty()) {
+            return CommandResult.invalid("Invalid product name. Please try again.");
+        }
+        int space = splitQuantity(argument);
+        String name = space < 0 ? argument : argument.substring(space + 1).trim();
+        int quantity = space < 0 ? defaultQuantity : parseQuantity(argument.substring(0, space));
+        return purchase ? purchase(cart, name, quantity) : cancel(cart, name, quantity);
+    }
+
+    /**
+     * Parses the items of a multi-item purchase, "[quantity] name, [quantity] name...", and runs it.
+     */
+    private CommandResult<T> parseOrder(ShoppingCart<T> cart, String argument) {
+        Map<String, Integer> order = new LinkedHashMap<>();
+        for (String item : argument.split(",")) {
+            String text = item.trim();
+            if (text.isEmpty()) {
+                return CommandResult.invalid("Invalid product name. Please try again.");
+            }
+            int space = splitQuantity(text);
+            String name = space < 0 ? text : text.substring(space + 1).trim();
+            order.merge(name, space < 0 ? 1 : parseQuantity(text.substring(0, space)), Integer::sum);
+        }
+        return purchaseAll(cart, order);
+    }
+
+    /**
+     * Finds where a leading quantity ends in "[quantity] name".
+     *
+     * @param item the item text
+     * @return the index of the space after the quantity, or -1 if the item has no quantity
+     */
+    private int splitQuantity(String item) {
+        int space = item.indexOf(' ');
+        if (space > 0 && Character.isDigit(item.charAt(0)) && inventoryManager.getProductByName(item) == null
+                && parseQuantity(item.substring(0, space)) != null) {
+            return space;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a non-negative whole number.
+     *
+     * @param token the text to parse
+     * @return the number, or null if the text is not a non-negative whole number
+     */
+    private static Integer parseQuantity(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
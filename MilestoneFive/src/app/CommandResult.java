@@ -0,0 +1,117 @@
+package app;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a command run by a CommandEngine: whether it succeeded, a message
+ * for the shopper, and the products it returned, if any.
+ *
+ * @param <T> the type of product
+ */
+public final class CommandResult<T extends SalableProduct> {
+
+    /**
+     * How a command ended.
+     */
+    public enum Status {
+        /** The command did what was asked. */
+        OK,
+        /** The command was understood but could not be carried out, e.g. too little stock. */
+        REJECTED,
+        /** The command or one of its arguments was not understood. */
+        INVALID
+    }
+
+    private final Status status;
+    private final String message;
+    private final List<T> products;
+
+    private CommandResult(Status status, String message, List<T> products) {
+        this.status = status;
+        this.message = message;
+        this.products = products;
+    }
+
+    /**
+     * Returns a successful result.
+     *
+     * @param message the message for the shopper
+     * @param products the products the command returned
+     * @param <T> the type of product
+     * @return the result
+     */
+    static <T extends SalableProduct> CommandResult<T> ok(String message, List<T> products) {
+        return new CommandResult<>(Status.OK, message, Collections.unmodifiableList(products));
+    }
+
+    /**
+     * Returns a successful result with no products.
+     *
+     * @param message the message for the shopper
+     * @param <T> the type of product
+     * @return the result
+     */
+    static <T extends SalableProduct> CommandResult<T> ok(String message) {
+        return new CommandResult<>(Status.OK, message, Collections.emptyList());
+    }
+
+    /**
+     * Returns the result of a command that could not be carried out.
+     *
+     * @param message why the command was rejected
+     * @param <T> the type of product
+     * @return the result
+     */
+    static <T extends SalableProduct> CommandResult<T> rejected(String message) {
+        return new CommandResult<>(Status.REJECTED, message, Collections.emptyList());
+    }
+
+    /**
+     * Returns the result of a command that was not understood.
+     *
+     * @param message what was wrong with the command
+     * @param <T> the type of product
+     * @return the result
+     */
+    static <T extends SalableProduct> CommandResult<T> invalid(String message) {
+        return new CommandResult<>(Status.INVALID, message, Collections.emptyList());
+    }
+
+    /**
+     * Returns how the command ended.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns whether the command succeeded.
+     *
+     * @return true if the status is OK
+     */
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+
+    /**
+     * Returns the message for the shopper.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the products the command returned, such as the inventory page of a
+     * view command or the contents of the cart.
+     *
+     * @return an unmodifiable list of products, empty if the command returned none
+     */
+    public List<T> getProducts() {
+        return products;
+    }
+}
@@ -5,6 +5,7 @@ package app;
  */
 public class Health extends SalableProduct implements Comparable<SalableProduct> {
     private int healing;
+    private String fullDescription; // getDescription's result, built on first use and cleared when the description changes
 
     /**
      * Constructs a new Health object with the given name, description, price, quantity, and healing power.
@@ -29,6 +30,17 @@ public class Health extends SalableProduct implements Comparable<SalableProduct>
         return healing;
     }
 
+    /**
+     * Changes the plain description, dropping the cached full description.
+     *
+     * @param description the new description
+     */
+    @Override
+    void setDescription(String description) {
+        super.setDescription(description);
+        this.fullDescription = null;
+    }
+
     /**
      * Returns type of health.
      *
@@ -45,7 +57,7 @@ public class Health extends SalableProduct implements Comparable<SalableProduct>
      */
     @Override
     public String toString() {
-        return String.format("%s - %s - $%.2f - %d - %d healing", getName(), getDescription(), getPrice(), getQuantity(), healing);
+        return getName() + " - " + getDescription() + " - $" + Money.format(getPriceCents()) + " - " + getQuantity() + " - " + healing + " healing";
     }
 
     /**
@@ -54,7 +66,12 @@ public class Health extends SalableProduct implements Comparable<SalableProduct>
      * @return the description of the health item
      */
     public String getDescription() {
-        return super.getDescription() + " - Healing Power: " + healing;
+        String description = fullDescription;
+        if (description == null) {
+            description = super.getDescription() + " - Healing Power: " + healing;
+            fullDescription = description;
+        }
+        return description;
     }
 
     /**
@@ -67,7 +84,7 @@ public class Health extends SalableProduct implements Comparable<SalableProduct>
     public int compareTo(SalableProduct otherProduct) {
         if (otherProduct instanceof Health) {
             Health otherHealth = (Health) otherProduct;
-            return Double.compare(this.getPrice(), otherHealth.getPrice());
+            return Long.compare(this.getPriceCents(), otherHealth.getPriceCents());
         } else {
             return super.compareTo(otherProduct);
         }
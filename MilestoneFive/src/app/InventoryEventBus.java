@@ -0,0 +1,346 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The InventoryEventBus class streams inventory changes (stock changes, added and
+ * removed products, new prices) to any number of consumers, each running on its
+ * own thread.
+ *
+ * Events travel through a ring of event objects allocated up front. A publisher
+ * claims the next slot by compare-and-set, fills it in and marks it published, so
+ * publishing allocates nothing and takes no lock. Each consumer follows the ring at
+ * its own pace and is handed every event published since it last looked as one
+ * batch. A slot is only reused once every consumer has passed it; when the ring is
+ * full the bus either drops the new event or makes the publisher wait, as chosen
+ * when it is built.
+ *
+ * Consumers are subscribed before the bus is started. An event object belongs to
+ * the bus: a handler must copy whatever it keeps beyond its call.
+ *
+ * @param <T> the type of product
+ */
+public class InventoryEventBus<T extends SalableProduct> {
+    private static final int SPINS_BEFORE_PARK = 100; // empty polls a consumer spins through before it sleeps
+    private static final long IDLE_PARK_NANOS = 100_000; // how long an idle consumer sleeps between polls
+    private static final long FULL_PARK_NANOS = 1_000; // how long a blocked publisher sleeps between tries
+
+    private final Event<T>[] ring;
+    private final int mask;
+    private final BackPressure backPressure;
+    private final AtomicLong cursor = new AtomicLong(-1); // last sequence claimed
+    private volatile long gatingCache = -1; // slowest consumer's sequence when last looked up
+    private final List<Subscriber<T>> pending = new ArrayList<>(); // subscribed before start
+    private volatile Subscriber<T>[] subscribers; // set by start
+    private volatile boolean running;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * What a publisher does when the ring is full because a consumer lags behind.
+     */
+    public enum BackPressure {
+        /** Wait for the slowest consumer to free a slot. No event is lost. */
+        BLOCK,
+        /** Drop the new event and count it. Publishers never wait. */
+        DROP
+    }
+
+    /**
+     * Constructs a new InventoryEventBus object with a ring of the given size.
+     *
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     * @param backPressure what publishers do when the ring is full
+     * @throws IllegalArgumentException if capacity is not positive or above 2^30
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public InventoryEventBus(int capacity, BackPressure backPressure) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.ring = new Event[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event<>();
+        }
+        this.mask = size - 1;
+        this.backPressure = backPressure;
+    }
+
+    /**
+     * Adds a consumer. Its handler will be called on a thread of its own with every
+     * event published after the bus starts, in publication order.
+     *
+     * @param name the consumer's name, used to name its thread
+     * @param handler the handler to call
+     * @throws IllegalStateException if the bus has already been started
+     */
+    public synchronized void subscribe(String name, Handler<T> handler) {
+        if (subscribers != null) {
+            throw new IllegalStateException("Consumers must subscribe before the bus starts");
+        }
+        pending.add(new Subscriber<>(name, handler));
+    }
+
+    /**
+     * Starts a thread for every consumer and begins accepting events.
+     *
+     * @throws IllegalStateException if the bus has already been started
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public synchronized void start() {
+        if (subscribers != null) {
+            throw new IllegalStateException("The bus has already been started");
+        }
+        subscribers = pending.toArray(new Subscriber[0]);
+        running = true;
+        for (Subscriber<T> subscriber : subscribers) {
+            Thread thread = new Thread(() -> consume(subscriber), "inventory-events-" + subscriber.name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops accepting events. Consumers finish the events already published and
+     * then stop.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Publishes one change.
+     *
+     * @param type the kind of change
+     * @param product the product changed
+     * @param delta the change in stock for a stock change, otherwise 0
+     * @return true if the event was published, false if the bus is not running, has
+     *         no consumers or dropped the event because the ring was full
+     */
+    public boolean publish(EventType type, T product, int delta) {
+        Subscriber<T>[] current = subscribers;
+        if (!running || current == null || current.length == 0) {
+            return false;
+        }
+        long sequence = claim(current);
+        if (sequence < 0) {
+            return false;
+        }
+        Event<T> event = ring[(int) sequence & mask];
+        event.type = type;
+        event.product = product;
+        event.delta = delta;
+        event.quantity = product.getQuantity();
+        event.priceCents = product.getPriceCents();
+        event.sequence = sequence; // publishes the fields above
+        return true;
+    }
+
+    /**
+     * Returns the number of events dropped because the ring was full.
+     *
+     * @return the dropped event count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events the slowest consumer has yet to handle.
+     *
+     * @return the consumer lag in events
+     */
+    public long getLag() {
+        Subscriber<T>[] current = subscribers;
+        if (current == null) {
+            return 0;
+        }
+        long claimed = cursor.get();
+        return claimed - minimumSequence(current, claimed);
+    }
+
+    /**
+     * Claims the next slot of the ring.
+     *
+     * @return the slot's sequence, or -1 if the ring is full and events are dropped
+     */
+    private long claim(Subscriber<T>[] current) {
+        while (true) {
+            long claimed = cursor.get();
+            long next = claimed + 1;
+            long wrapPoint = next - ring.length; // the sequence whose slot is reused
+            if (wrapPoint > gatingCache) {
+                long slowest = minimumSequence(current, claimed);
+                gatingCache = slowest;
+                if (wrapPoint > slowest) {
+                    if (backPressure == BackPressure.DROP) {
+                        dropped.increment();
+                        return -1;
+                    }
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                    continue;
+                }
+            }
+            if (cursor.compareAndSet(claimed, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static <T extends SalableProduct> long minimumSequence(Subscriber<T>[] current, long claimed) {
+        long minimum = claimed;
+        for (Subscriber<T> subscriber : current) {
+            minimum = Math.min(minimum, subscriber.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Runs one consumer: hands it every published event in batches until the bus
+     * stops and the consumer has caught up.
+     *
+     * @param subscriber the consumer
+     */
+    private void consume(Subscriber<T> subscriber) {
+        long next = subscriber.sequence.get() + 1;
+        int idle = 0;
+        while (true) {
+            long last = next - 1;
+            while (last - next + 1 < ring.length && ring[(int) (last + 1) & mask].sequence == last + 1) {
+                last++;
+            }
+            if (last < next) {
+                if (!running && cursor.get() < next) {
+                    return;
+                }
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                continue;
+            }
+            idle = 0;
+            for (long sequence = next; sequence <= last; sequence++) {
+                try {
+                    subscriber.handler.onEvent(ring[(int) sequence & mask], sequence == last);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in inventory event consumer " + subscriber.name + ": " + e.getMessage());
+                }
+            }
+            subscriber.sequence.lazySet(last); // frees the slots for publishers
+            next = last + 1;
+        }
+    }
+
+    /**
+     * The kinds of inventory change.
+     */
+    public enum EventType {
+        /** Stock of a product went up or down. */
+        QUANTITY,
+        /** A product was added to the inventory. */
+        ADD,
+        /** A product was removed from the inventory. */
+        REMOVE,
+        /** The price of a product changed. */
+        PRICE
+    }
+
+    /**
+     * Receives the events of one consumer, on that consumer's thread.
+     *
+     * @param <T> the type of product
+     */
+    public interface Handler<T extends SalableProduct> {
+
+        /**
+         * Handles one event.
+         *
+         * @param event the event, valid only for the duration of the call
+         * @param endOfBatch true if this is the last event available for now
+         */
+        void onEvent(Event<T> event, boolean endOfBatch);
+    }
+
+    /**
+     * One inventory change: a slot of the ring, filled in again for every event
+     * published through it.
+     *
+     * @param <T> the type of product
+     */
+    public static final class Event<T extends SalableProduct> {
+        private volatile long sequence = -1; // sequence of the event in the slot, written last
+        private EventType type;
+        private T product;
+        private int delta;
+        private int quantity;
+        private long priceCents;
+
+        private Event() {
+        }
+
+        /**
+         * Returns the kind of change.
+         *
+         * @return the event type
+         */
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * Returns the product changed.
+         *
+         * @return the product
+         */
+        public T getProduct() {
+            return product;
+        }
+
+        /**
+         * Returns the change in stock of a QUANTITY event.
+         *
+         * @return the units added, negative if units were taken, or 0 for other events
+         */
+        public int getDelta() {
+            return delta;
+        }
+
+        /**
+         * Returns the product's stock as the publisher saw it just after the change.
+         *
+         * @return the stock after the change
+         */
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * Returns the product's price as the publisher saw it just after the change.
+         *
+         * @return the price in cents
+         */
+        public long getPriceCents() {
+            return priceCents;
+        }
+    }
+
+    /**
+     * A consumer and how far through the ring it has got.
+     */
+    private static final class Subscriber<T extends SalableProduct> {
+        final String name;
+        final Handler<T> handler;
+        final AtomicLong sequence = new AtomicLong(-1); // last sequence handled
+
+        Subscriber(String name, Handler<T> handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * The InventoryJournal class is an append-only binary log of inventory changes,
+ * written through a FileChannel so stock changes survive a restart.
+ *
+ * Appends are cheap: a record is copied into an in-memory batch and the caller gets
+ * back its sequence number. A single flusher thread writes each batch and forces it
+ * to disk with one force() call, so many concurrent purchases share one disk sync
+ * (group commit). Callers that need durability wait with awaitDurable.
+ *
+ * Each record is framed as [length][CRC32][payload], so a record torn by a crash is
+ * detected and dropped, together with anything after it, when the journal is reopened.
+ *
+ * Stock changes are applied by the journal itself, under the lock that orders its
+ * records, so the records of a product's stock changes are in the order the changes
+ * were made and replaying them gives back the same stock.
+ */
+public class InventoryJournal implements Closeable {
+    private static final int MAGIC = 0x494E564A; // "INVJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final byte ADJUST_QUANTITY = 1;
+    private static final byte ADD_PRODUCT = 2;
+    private static final byte REMOVE_PRODUCT = 3;
+    private static final byte UPDATE_PRICE = 4;
+    private static final byte ADJUST_QUANTITIES = 5;
+    private static final byte SOURCE_VERSION = 6;
+    private static final byte UPDATE_DESCRIPTION = 7;
+
+    private final File file;
+    private final FileChannel channel;
+    // a ReentrantLock rather than a monitor, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition(); // signalled when records are appended or the journal closes
+    private final Condition hasFlushed = lock.newCondition(); // signalled when a batch reaches disk or fails
+    private final Thread flusher;
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024); // records appended but not yet written
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024); // the batch the flusher is writing
+    private long appended; // sequence number of the last record appended
+    private long durable; // sequence number of the last record forced to disk
+    private IOException failure; // set once a write fails; every later wait rethrows it
+    private boolean closed;
+
+    /**
+     * Opens a journal for appending, creating it if it does not exist. A torn record
+     * at the end of an existing journal is cut off.
+     *
+     * @param file the journal file
+     * @throws IOException if the journal cannot be opened or is not a journal file
+     */
+    public InventoryJournal(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                writeHeader();
+            } else {
+                long end = validEnd(file);
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        flusher = new Thread(this::flushLoop, "inventory-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Makes a change to a product's stock and appends it. The change runs while the
+     * journal's lock is held, so no other record can come between making the change
+     * and appending it.
+     *
+     * @param name the name of the product
+     * @param change makes the change and returns the number of units added (positive)
+     *        or taken (negative), or 0 if it made none
+     * @return the sequence number of the record, or 0 if no change was made
+     * @throws IOException if the journal has failed or is closed, in which case the change is not made
+     */
+    public long logQuantityChange(String name, IntSupplier change) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            int delta = change.getAsInt();
+            if (delta == 0) {
+                return 0;
+            }
+            Record record = new Record(ADJUST_QUANTITY);
+            record.data.writeUTF(name);
+            record.data.writeInt(delta);
+            return append(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes changes to the stock of several products and appends them as one record,
+     * so they are replayed all together or, if the record is torn, not at all. The
+     * change runs while the journal's lock is held, as for logQuantityChange.
+     *
+     * @param names the names of the products
+     * @param deltas the number of units added (positive) or taken (negative), one per name
+     * @param change makes every change and returns true, or makes none and returns false
+     * @return the sequence number of the record, or 0 if no change was made
+     * @throws IOException if the journal has failed or is closed, in which case the changes are not made
+     */
+    public long logQuantityChanges(String[] names, int[] deltas, BooleanSupplier change) throws IOException {
+        Record record = new Record(ADJUST_QUANTITIES);
+        record.data.writeInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            record.data.writeUTF(names[i]);
+            record.data.writeInt(deltas[i]);
+        }
+        lock.lock();
+        try {
+            checkOpen();
+            return change.getAsBoolean() ? append(record) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the addition of a product.
+     *
+     * @param product the product added
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    public long logAdd(SalableProduct product) throws IOException {
+        Record record = new Record(ADD_PRODUCT);
+        record.data.writeUTF(product.getName());
+        record.data.writeBoolean(product.getBaseDescription() != null);
+        if (product.getBaseDescription() != null) {
+            record.data.writeUTF(product.getBaseDescription());
+        }
+        record.data.writeLong(product.getPriceCents());
+        record.data.writeInt(product.getQuantity());
+        return append(record);
+    }
+
+    /**
+     * Appends the removal of a product.
+     *
+     * @param name the name of the product
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    public long logRemove(String name) throws IOException {
+        Record record = new Record(REMOVE_PRODUCT);
+        record.data.writeUTF(name);
+        return append(record);
+    }
+
+    /**
+     * Appends a change of a product's price.
+     *
+     * @param name the name of the product
+     * @param price the new price
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    public long logPriceChange(String name, Money price) throws IOException {
+        Record record = new Record(UPDATE_PRICE);
+        record.data.writeUTF(name);
+        record.data.writeLong(price.getCents());
+        return append(record);
+    }
+
+    /**
+     * Appends a change of a product's description.
+     *
+     * @param name the name of the product
+     * @param description the new description, may be null
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    public long logDescriptionChange(String name, String description) throws IOException {
+        Record record = new Record(UPDATE_DESCRIPTION);
+        record.data.writeUTF(name);
+        record.data.writeBoolean(description != null);
+        if (description != null) {
+            record.data.writeUTF(description);
+        }
+        return append(record);
+    }
+
+    /**
+     * Appends the version of the JSON file the inventory reflects once the records
+     * before this one are applied, as after a reload of the file.
+     *
+     * @param modified the modification time of the file
+     * @param length the length of the file
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    public long logSourceVersion(long modified, long length) throws IOException {
+        Record record = new Record(SOURCE_VERSION);
+        record.data.writeLong(modified);
+        record.data.writeLong(length);
+        return append(record);
+    }
+
+    /**
+     * Blocks until the record with the given sequence number, and every record
+     * before it, has been forced to disk.
+     *
+     * @param sequence a sequence number returned by one of the log methods
+     * @throws IOException if writing the journal failed or the wait was interrupted
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence && failure == null) {
+                hasFlushed.await();
+            }
+            if (durable < sequence) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records appended since the journal was opened.
+     *
+     * @return the number of records appended
+     */
+    public long getAppendedCount() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out every pending record, stops the flusher and closes the file.
+     *
+     * @throws IOException if the last batch cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            hasPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays every complete record of a journal file into an inventory. Replay goes
+     * through the inventory's own methods, so it must run before the journal is
+     * attached to that inventory. Stock changes are applied exactly as logged, never
+     * refused for want of stock, so the stock comes back as it was. A torn record at the end of the file ends the replay.
+     *
+     * @param file the journal file; nothing is replayed if it does not exist
+     * @param manager the inventory to apply the records to
+     * @param <T> the type of product in the inventory
+     * @return the number of records replayed
+     * @throws IOException if the file cannot be read or is not a journal file
+     */
+    public static <T extends SalableProduct> long replay(File file, InventoryManager<T> manager) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+        long count = 0;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            checkHeader(in);
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                apply(payload, manager);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies one record to an inventory.
+     *
+     * @param payload the record payload
+     * @param manager the inventory to apply it to
+     * @throws IOException if the record is malformed
+     */
+    private static <T extends SalableProduct> void apply(byte[] payload, InventoryManager<T> manager) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = data.readByte();
+        if (type == ADJUST_QUANTITIES) {
+            for (int count = data.readInt(); count > 0; count--) {
+                manager.adjustQuantity(data.readUTF(), data.readInt());
+            }
+            return;
+        }
+        if (type == SOURCE_VERSION) {
+            manager.setSourceVersion(data.readLong(), data.readLong());
+            return;
+        }
+        String name = data.readUTF();
+        switch (type) {
+        case ADJUST_QUANTITY:
+            manager.adjustQuantity(name, data.readInt());
+            break;
+        case ADD_PRODUCT: {
+            String description = data.readBoolean() ? data.readUTF() : null;
+            long price = data.readLong();
+            int quantity = data.readInt();
+            @SuppressWarnings("unchecked")
+            T product = (T) new SalableProduct(name, description, Money.ofCents(price), quantity);
+            manager.addProduct(product);
+            break;
+        }
+        case REMOVE_PRODUCT: {
+            T product = manager.getProductByName(name);
+            if (product != null) {
+                manager.removeProduct(product);
+            }
+            break;
+        }
+        case UPDATE_PRICE: {
+            long price = data.readLong();
+            T product = manager.getProductByName(name);
+            if (product != null) {
+                manager.updatePrice(product, Money.ofCents(price));
+            }
+            break;
+        }
+        case UPDATE_DESCRIPTION: {
+            String description = data.readBoolean() ? data.readUTF() : null;
+            T product = manager.getProductByName(name);
+            if (product != null) {
+                manager.updateDescription(product, description);
+            }
+            break;
+        }
+        default:
+            throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Frames a record and adds it to the pending batch.
+     *
+     * @param record the record to append
+     * @return the sequence number of the record
+     * @throws IOException if the journal has failed or is closed
+     */
+    private long append(Record record) throws IOException {
+        byte[] payload = record.bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        lock.lock();
+        try {
+            checkOpen();
+            if (pending.remaining() < payload.length + 8) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + payload.length + 8));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putInt(payload.length);
+            pending.putInt((int) crc.getValue());
+            pending.put(payload);
+            appended++;
+            hasPending.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fails unless records can be appended. Callers hold the lock.
+     *
+     * @throws IOException if the journal has failed or is closed
+     */
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+    }
+
+    /**
+     * Runs on the flusher thread: takes the pending batch, writes it, forces it to
+     * disk and wakes the callers waiting for it, until the journal is closed.
+     */
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long last;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    hasPending.await();
+                }
+                if (pending.position() == 0 || failure != null) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                last = appended;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    batch.clear();
+                    hasFlushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                batch.clear();
+                durable = last;
+                hasFlushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    /**
+     * Returns the offset just past the last complete, intact record of a journal file.
+     *
+     * @param file the journal file
+     * @return the length of the valid part of the file
+     * @throws IOException if the file cannot be read or is not a journal file
+     */
+    private static long validEnd(File file) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            checkHeader(in);
+            while (readRecord(in) != null) {
+                // skip to the end of the valid records
+            }
+            return in.position();
+        }
+    }
+
+    private static void checkHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (readFully(in, header) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IOException("Not an inventory journal");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported journal version " + header.getInt(4));
+        }
+    }
+
+    /**
+     * Reads the next record, leaving the channel just past it.
+     *
+     * @param in the channel to read from
+     * @return the record payload, or null at the end of the file or at a torn or corrupt
+     *         record, in which case the channel is left at the start of that record
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readRecord(FileChannel in) throws IOException {
+        long start = in.position();
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        if (readFully(in, frame) < 8) {
+            in.position(start);
+            return null;
+        }
+        int length = frame.getInt(0);
+        int checksum = frame.getInt(4);
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            in.position(start);
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (readFully(in, payload) < length) {
+            in.position(start);
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            in.position(start);
+            return null;
+        }
+        return payload.array();
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * A record being encoded: its type byte followed by its fields.
+     */
+    private static final class Record {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream data = new DataOutputStream(bytes);
+
+        Record(byte type) throws IOException {
+            data.writeByte(type);
+        }
+    }
+}
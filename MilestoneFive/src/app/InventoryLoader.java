@@ -0,0 +1,117 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The InventoryLoader class streams salable products out of a JSON array one
+ * record at a time using the Jackson token-level parser, so memory use stays
+ * constant no matter how large the inventory file is.
+ */
+public class InventoryLoader {
+
+    /**
+     * Receives progress reports while an inventory file is being loaded.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * Called after every reporting interval and once more when loading ends.
+         *
+         * @param productsLoaded the number of products loaded so far
+         */
+        void onProgress(long productsLoaded);
+    }
+
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+
+    /**
+     * Constructs a new InventoryLoader object with a default ObjectMapper.
+     */
+    public InventoryLoader() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * Constructs a new InventoryLoader object that binds products with the given mapper.
+     *
+     * @param mapper the mapper used to bind each product record
+     */
+    public InventoryLoader(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.factory = mapper.getFactory();
+    }
+
+    /**
+     * Reads a JSON array of products from a file and hands each product to the
+     * sink as soon as it has been parsed.
+     *
+     * @param file the JSON file to read
+     * @param type the class each product record is bound to
+     * @param sink receives every product in file order
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     * @param <T> the type of product being loaded
+     * @return the number of products loaded
+     * @throws IOException if the file cannot be read or is not a JSON array of products
+     */
+    public <T extends SalableProduct> long load(File file, Class<T> type, Consumer<? super T> sink,
+            int progressInterval, ProgressListener listener) throws IOException {
+        return load(factory.createParser(file), type, sink, progressInterval, listener);
+    }
+
+    /**
+     * Reads an array of products from a stream and hands each product to the sink
+     * as soon as it has been parsed. The stream is closed when loading ends; bytes
+     * after the end of the array are not read as products.
+     *
+     * @param in the stream to read
+     * @param type the class each product record is bound to
+     * @param sink receives every product in stream order
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     * @param <T> the type of product being loaded
+     * @return the number of products loaded
+     * @throws IOException if the stream cannot be read or does not hold an array of products
+     */
+    public <T extends SalableProduct> long load(InputStream in, Class<T> type, Consumer<? super T> sink,
+            int progressInterval, ProgressListener listener) throws IOException {
+        return load(factory.createParser(in), type, sink, progressInterval, listener);
+    }
+
+    private <T extends SalableProduct> long load(JsonParser source, Class<T> type, Consumer<? super T> sink,
+            int progressInterval, ProgressListener listener) throws IOException {
+        long count = 0;
+        long reported = -1;
+        try (JsonParser parser = source) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of products");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                sink.accept(mapper.readValue(parser, type));
+                count++;
+                if (listener != null && progressInterval > 0 && count % progressInterval == 0) {
+                    listener.onProgress(count);
+                    reported = count;
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a product object");
+            }
+        }
+        if (listener != null && reported != count) {
+            listener.onProgress(count);
+        }
+        return count;
+    }
+}
@@ -2,67 +2,837 @@ package app;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * The InventoryManager class represents a Java class for managing inventory of
  * salable products using the Jackson library for JSON processing.
  */
 public class InventoryManager<T extends SalableProduct> {
-    private List<T> inventory;
+    private static final String INVENTORY_PATH = "src/app/inventoryone.json"; // path to the JSON file
+    private static final String JOURNAL_PREFIX = "inventoryone."; // journal segments are inventoryone.<generation>.journal
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final InventorySnapshot.Format SNAPSHOT_FORMAT = InventorySnapshot.Format.CBOR;
+    private static final int SHARED_DESCRIPTIONS = 1 << 16; // most distinct descriptions deduplicated while loading
+
+    private final List<T> inventory;
+    private final Map<String, T> nameIndex; // case-folded product name -> first product with that name
+    private final NavigableSet<T> byName; // products ordered by name, ties broken by insertion order
+    private final NavigableSet<T> byPrice; // products ordered by price, ties broken by insertion order
+    private final ProductSearchIndex<T> searchIndex; // words of names and descriptions -> products
+    private long nextSequence = 1; // insertion order handed to the next new product
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock(); // mutations share it, snapshots take it exclusively
+    private volatile InventoryJournal journal; // logs every change once the inventory is loaded, or null
+    private long generation; // number of the journal segment being written, changed under the checkpoint write lock
+    private long checkpointedGeneration; // generation of the newest snapshot written or loaded
+    private long sourceModified = -1; // modification time of the JSON file version the inventory reflects
+    private long sourceLength = -1; // length of that version, or -1 if the version is unknown
+    private final Object checkpointMonitor = new Object(); // lets one checkpoint run at a time
+    private ScheduledExecutorService checkpointer; // runs periodic checkpoints, or null
+    private InventoryReloader<T> reloader; // applies edits of the JSON file, or null; guarded by checkpointMonitor
+    private volatile InventoryEventBus<T> eventBus; // streams every change to consumers, or null
 
     /**
      * Constructs a new InventoryManager object with an empty inventory.
      */
     public InventoryManager() {
         inventory = new ArrayList<>();
+        nameIndex = new ConcurrentHashMap<>();
+        byName = new ConcurrentSkipListSet<>(Comparator.<T>naturalOrder().thenComparingLong(SalableProduct::getSequence));
+        byPrice = new ConcurrentSkipListSet<>(Comparator.<T>comparingLong(SalableProduct::getPriceCents).thenComparingLong(SalableProduct::getSequence));
+        searchIndex = new ProductSearchIndex<>();
     }
 
     /**
      * Initializes the inventory by reading from a JSON file and populating the inventory with SalableProduct objects obtained from the file.
      */
     public void initInventory() {
+        initInventory(0, null);
+    }
+
+    /**
+     * Initializes the inventory by streaming products from the JSON file one at a time,
+     * reporting progress to the listener every {@code progressInterval} products.
+     *
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     */
+    public void initInventory(int progressInterval, InventoryLoader.ProgressListener listener) {
         System.out.println("Initializing inventory...");
+        loadInventory(progressInterval, listener);
+        System.out.println("Inventory initialized.\n"); // printing a message after successful initialization
+    }
 
+    /**
+     * Starts loading the inventory in the background and returns immediately.
+     * While the load is running getProductByName already answers for every product
+     * read so far; callers that need the full inventory should wait on the returned future.
+     *
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     * @return a future that completes once the whole file has been loaded
+     */
+    public CompletableFuture<Void> initInventoryAsync(int progressInterval, InventoryLoader.ProgressListener listener) {
+        return CompletableFuture.runAsync(() -> loadInventory(progressInterval, listener));
+    }
+
+    /**
+     * Replaces the inventory with the products from the newest valid snapshot and
+     * the journal segments written since it was taken, when together they reflect
+     * the JSON file as it is now, or else with the products streamed from the JSON
+     * file, after which a fresh snapshot is written for the next start. Snapshots
+     * record the version of the file they were taken from and the journal records
+     * every reload of it, so an edit that was reloaded needs no checkpoint, while one
+     * made while the store was down replaces the inventory. Only the segments since
+     * the snapshot are replayed, so restart time depends on the changes since the
+     * last checkpoint, not on uptime. From then on every change is journaled.
+     *
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     */
+    private void loadInventory(int progressInterval, InventoryLoader.ProgressListener listener) {
+        @SuppressWarnings("unchecked")
+        Class<T> type = (Class<T>) SalableProduct.class;
+        File source = new File(INVENTORY_PATH);
+        InventorySnapshot newest = getSnapshot();
+        // every record parsed carries its own copy of its description; keep one copy of each instead
+        Map<String, String> descriptions = new HashMap<>();
+        Consumer<T> sink = product -> addProduct(shareDescription(product, descriptions));
+
+        closeJournal();
+        clear();
+        // a snapshot torn by a crash fails its checksum; the one it replaced is tried next,
+        // and the journal segments written since it was taken are all still on disk
+        for (InventorySnapshot snapshot : new InventorySnapshot[] { newest, newest.previous() }) {
+            if (!snapshot.getFile().isFile()) {
+                continue;
+            }
+            try {
+                InventorySnapshot.Header header = snapshot.verify();
+                long covered = header.getGeneration();
+                snapshot.read(type, sink, progressInterval, listener);
+                setSourceVersion(header.getSourceModified(), header.getSourceLength());
+                long last = covered - 1;
+                for (long segment : journalSegments()) {
+                    if (segment >= covered) {
+                        InventoryJournal.replay(journalSegment(segment), this);
+                        last = segment;
+                    }
+                }
+                if (!reflects(source)) {
+                    // the file was edited while the store was down; the older snapshot cannot reflect it either
+                    System.out.println("Inventory file changed since it was last loaded, reading it again");
+                    clear();
+                    break;
+                }
+                checkpointedGeneration = covered;
+                openJournal(last + 1);
+                return;
+            } catch (IOException e) {
+                System.err.println("Error reading snapshot " + snapshot.getFile() + ": " + e.getMessage());
+                clear();
+            }
+        }
+
+        long modified = source.lastModified(); // taken before reading, so an edit made meanwhile is reloaded later
+        long length = source.length();
         try {
-            String path = "src/app/inventoryone.json"; // path to the JSON file
-            ObjectMapper mapper = new ObjectMapper(); // creating a new ObjectMapper object
-            @SuppressWarnings("unchecked")
-			T[] products = mapper.readValue(new File(path), (Class<T[]>) new SalableProduct[0].getClass()); // reading the JSON file and converting it to an array of SalableProduct objects using Jackson library
-            inventory = new ArrayList<>(Arrays.asList(products)); // convert array to ArrayList using the constructor
+            new InventoryLoader().load(source, type, sink, progressInterval, listener);
         } catch (IOException e) {
             System.err.println("Error reading JSON file: " + e.getMessage()); // printing error message in case of any exception
+            return;
         }
+        setSourceVersion(modified, length);
+        // older snapshots and their journal describe a state the JSON file replaces
+        newest.delete();
+        deleteJournalSegments(Long.MAX_VALUE);
+        checkpointedGeneration = 0;
+        openJournal(1);
+        saveSnapshot();
+    }
 
-        System.out.println("Inventory initialized.\n"); // printing a message after successful initialization
+    /**
+     * Makes a loaded product use the copy of its description seen first, remembering
+     * up to SHARED_DESCRIPTIONS distinct descriptions.
+     *
+     * @param product the product just loaded
+     * @param descriptions the descriptions seen so far, each mapped to itself
+     * @return the product
+     */
+    private static <T extends SalableProduct> T shareDescription(T product, Map<String, String> descriptions) {
+        String description = product.getBaseDescription();
+        if (description == null) {
+            return product;
+        }
+        String shared = descriptions.get(description);
+        if (shared == null) {
+            if (descriptions.size() < SHARED_DESCRIPTIONS) {
+                descriptions.put(description, description);
+            }
+        } else {
+            product.shareDescription(shared);
+        }
+        return product;
+    }
+
+    /**
+     * Records which version of the JSON file the inventory reflects, as loaded from
+     * it, reloaded from it or recorded in a snapshot or the journal.
+     *
+     * @param modified the modification time of the file
+     * @param length the length of the file, or -1 if the version is unknown
+     */
+    synchronized void setSourceVersion(long modified, long length) {
+        sourceModified = modified;
+        sourceLength = length;
+    }
+
+    /**
+     * Checks whether the inventory reflects the JSON file as it is now. A missing file
+     * is reflected by any inventory, so a snapshot still loads without it.
+     *
+     * @param source the JSON file
+     * @return true if the file has not changed since the version the inventory reflects
+     */
+    private synchronized boolean reflects(File source) {
+        if (!source.isFile()) {
+            return true;
+        }
+        return sourceLength >= 0 && source.lastModified() == sourceModified && source.length() == sourceLength;
+    }
+
+    /**
+     * Opens a new journal segment and starts logging changes to it.
+     *
+     * @param segment the generation of the segment
+     */
+    private void openJournal(long segment) {
+        generation = segment;
+        try {
+            journal = new InventoryJournal(journalSegment(segment));
+        } catch (IOException e) {
+            System.err.println("Error opening journal, changes will not be saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops logging changes and closes the journal, writing out any pending records.
+     */
+    public void closeJournal() {
+        checkpointLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        } finally {
+            journal = null;
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until a journal record is on disk.
+     *
+     * @param journal the journal the record was appended to
+     * @param sequence the sequence number of the record
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    private static void awaitDurable(InventoryJournal journal, long sequence) {
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        }
+    }
+
+    /**
+     * Returns the file of a journal segment.
+     *
+     * @param segment the generation of the segment
+     * @return the segment file next to the JSON inventory file
+     */
+    private static File journalSegment(long segment) {
+        return new File(new File(INVENTORY_PATH).getParentFile(), JOURNAL_PREFIX + segment + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Returns the generations of every journal segment on disk, oldest first.
+     *
+     * @return the segment generations in ascending order
+     */
+    private static long[] journalSegments() {
+        String[] names = new File(INVENTORY_PATH).getParentFile().list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] segments = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)) {
+                try {
+                    segments[count] = Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+                    count++;
+                } catch (NumberFormatException e) {
+                    // not a journal segment
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(segments, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Deletes the journal segments older than the given generation.
+     *
+     * @param before the first generation to keep
+     */
+    private static void deleteJournalSegments(long before) {
+        for (long segment : journalSegments()) {
+            if (segment < before && !journalSegment(segment).delete()) {
+                System.err.println("Error deleting journal segment " + journalSegment(segment));
+            }
+        }
+    }
+
+    /**
+     * Takes a checkpoint: writes the current inventory to the binary snapshot that
+     * initInventory loads on the next start, then deletes the journal segments the
+     * snapshot makes unnecessary. Changes are held only while the inventory is copied
+     * and the journal moves to a new segment; the snapshot itself is written while
+     * purchases carry on. The segments written since the previous snapshot are kept
+     * so that snapshot still recovers if this one turns out to be torn.
+     */
+    public void saveSnapshot() {
+        synchronized (checkpointMonitor) {
+            List<SalableProduct> products;
+            long covered;
+            long modified;
+            long length;
+            checkpointLock.writeLock().lock();
+            try {
+                synchronized (this) {
+                    products = copyProducts();
+                    modified = sourceModified;
+                    length = sourceLength;
+                }
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                }
+                openJournal(generation + 1);
+                covered = generation;
+            } catch (IOException e) {
+                System.err.println("Error closing journal segment: " + e.getMessage());
+                return;
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            try {
+                getSnapshot().write(products, covered, modified, length);
+            } catch (IOException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+                return;
+            }
+            deleteJournalSegments(checkpointedGeneration);
+            checkpointedGeneration = covered;
+        }
+    }
+
+    /**
+     * Copies the name, description, price and stock of every product, so a snapshot
+     * can be written from a consistent state while the live products keep changing.
+     * Callers hold the checkpoint write lock.
+     *
+     * @return detached copies of the products in inventory order
+     */
+    private synchronized List<SalableProduct> copyProducts() {
+        List<SalableProduct> copies = new ArrayList<>(inventory.size());
+        for (int i = 0, n = inventory.size(); i < n; i++) {
+            T product = inventory.get(i);
+            copies.add(new SalableProduct(product.getName(), product.getBaseDescription(), Money.ofCents(product.getPriceCents()), product.getQuantity()));
+        }
+        return copies;
+    }
+
+    /**
+     * Starts taking a checkpoint in the background at a fixed interval, skipping
+     * intervals in which nothing changed. Any checkpointer already running is stopped.
+     *
+     * @param period the time between checkpoints
+     * @param unit the unit of the period
+     */
+    public void startCheckpointer(long period, TimeUnit unit) {
+        synchronized (checkpointMonitor) {
+            stopCheckpointer();
+            checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "inventory-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpointer.scheduleWithFixedDelay(() -> {
+                InventoryJournal current = journal;
+                if (current != null && current.getAppendedCount() > 0) {
+                    saveSnapshot();
+                }
+            }, period, period, unit);
+        }
+    }
+
+    /**
+     * Stops the background checkpointer, if one is running.
+     */
+    public void stopCheckpointer() {
+        synchronized (checkpointMonitor) {
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+                checkpointer = null;
+            }
+        }
+    }
+
+    /**
+     * Starts watching the JSON inventory file and applying edits to it to the live
+     * inventory, as an InventoryReloader describes. Any reloader already running is
+     * stopped. The file as it is now is taken to match the loaded inventory.
+     */
+    public void startReloader() {
+        synchronized (checkpointMonitor) {
+            stopReloader();
+            InventoryReloader<T> started = new InventoryReloader<>(this, new File(INVENTORY_PATH));
+            try {
+                started.start();
+                reloader = started;
+            } catch (IOException e) {
+                System.err.println("Error watching JSON file, edits will need a restart: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops watching the JSON inventory file, if a reloader is running.
+     */
+    public void stopReloader() {
+        synchronized (checkpointMonitor) {
+            if (reloader != null) {
+                reloader.stop();
+                reloader = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot kept alongside the JSON inventory file.
+     *
+     * @return the inventory snapshot
+     */
+    private InventorySnapshot getSnapshot() {
+        return new InventorySnapshot(InventorySnapshot.fileFor(new File(INVENTORY_PATH), SNAPSHOT_FORMAT), SNAPSHOT_FORMAT);
+    }
+
+    /**
+     * Removes every product from the inventory and the name index.
+     */
+    private synchronized void clear() {
+        inventory.clear();
+        nameIndex.clear();
+        byName.clear();
+        byPrice.clear();
+        searchIndex.clear();
     }
 
     /**
      * Removes a specified product from the inventory.
      *
      * @param product the product to be removed from the inventory
+     * @throws UncheckedIOException if the change could not be journaled
      */
     public void removeProduct(T product) {
-        inventory.remove(product);
+        InventoryJournal journal;
+        long sequence;
+        T removed;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            synchronized (this) {
+                int index = inventory.indexOf(product);
+                if (index < 0) {
+                    return;
+                }
+                removed = inventory.get(index);
+                sequence = journal == null ? 0 : journal.logRemove(removed.getName());
+                inventory.remove(index);
+                unindex(removed);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        publish(InventoryEventBus.EventType.REMOVE, removed, 0);
+        if (journal != null) {
+            awaitDurable(journal, sequence);
+        }
+    }
+
+    /**
+     * Drops a product that has been removed from the inventory list from every index.
+     *
+     * @param removed the removed product
+     */
+    private void unindex(T removed) {
+        byName.remove(removed);
+        byPrice.remove(removed);
+        searchIndex.remove(removed);
+        String key = nameKey(removed.getName());
+        if (nameIndex.get(key) == removed) {
+            nameIndex.remove(key);
+            // another product may share the name; it becomes the one returned by lookups
+            for (T other : inventory) {
+                if (nameKey(other.getName()).equals(key)) {
+                    nameIndex.put(key, other);
+                    break;
+                }
+            }
+        }
     }
 
     /**
      * Adds a specified product to the inventory.
      *
      * @param product the product to be added to the inventory
+     * @throws UncheckedIOException if the change could not be journaled
      */
     public void addProduct(T product) {
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            synchronized (this) {
+                sequence = journal == null ? 0 : journal.logAdd(product);
+                insert(product);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        publish(InventoryEventBus.EventType.ADD, product, 0);
+        if (journal != null) {
+            awaitDurable(journal, sequence);
+        }
+    }
+
+    /**
+     * Adds a product to the inventory list and every index. Callers hold this
+     * manager's lock.
+     *
+     * @param product the product to add
+     */
+    private void insert(T product) {
+        if (product.getSequence() == 0) {
+            product.setSequence(nextSequence++);
+        }
         inventory.add(product);
+        nameIndex.putIfAbsent(nameKey(product.getName()), product);
+        byName.add(product);
+        byPrice.add(product);
+        searchIndex.add(product);
+    }
+
+    /**
+     * Changes the price of a product, moving it to its new place in the price order.
+     *
+     * @param product the product whose price changes
+     * @param price the new price
+     * @throws UncheckedIOException if the change could not be journaled
+     */
+    public void updatePrice(T product, Money price) {
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            synchronized (this) {
+                sequence = journal == null ? 0 : journal.logPriceChange(product.getName(), price);
+                reprice(product, price.getCents());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        publish(InventoryEventBus.EventType.PRICE, product, 0);
+        if (journal != null) {
+            awaitDurable(journal, sequence);
+        }
+    }
+
+    /**
+     * Changes the plain description of a product, re-indexing its words for search.
+     *
+     * @param product the product whose description changes
+     * @param description the new description
+     * @throws UncheckedIOException if the change could not be journaled
+     */
+    public void updateDescription(T product, String description) {
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            synchronized (this) {
+                sequence = journal == null ? 0 : journal.logDescriptionChange(product.getName(), description);
+                redescribe(product, description);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        if (journal != null) {
+            awaitDurable(journal, sequence);
+        }
+    }
+
+    /**
+     * Sets the plain description of a product and re-indexes it for search. Callers
+     * hold this manager's lock.
+     *
+     * @param product the product whose description changes
+     * @param description the new description
+     */
+    private void redescribe(T product, String description) {
+        boolean indexed = byName.contains(product);
+        if (indexed) {
+            searchIndex.remove(product);
+        }
+        product.setDescription(description);
+        if (indexed) {
+            searchIndex.add(product);
+        }
+    }
+
+    /**
+     * Sets the price of a product and moves it to its new place in the price order.
+     * Callers hold this manager's lock.
+     *
+     * @param product the product whose price changes
+     * @param priceCents the new price in cents
+     */
+    private void reprice(T product, long priceCents) {
+        boolean indexed = byPrice.remove(product);
+        product.setPriceCents(priceCents);
+        if (indexed) {
+            byPrice.add(product);
+        }
+    }
+
+    /**
+     * Applies a batch of changes, such as the difference between two versions of
+     * the inventory file, in one step. Every change is journaled and the batch waits
+     * for a single disk sync, and readers keep running throughout. Stock is adjusted
+     * by delta, so units held in carts stay reserved; a decrease larger than the
+     * stock on hand takes only what is on hand. Prices and descriptions change in
+     * place, so the products keep their identity in carts and holds. Removing
+     * products costs one pass over the inventory list however many are removed;
+     * everything else costs time in proportion to the size of the batch.
+     *
+     * @param added new products to add
+     * @param prices new prices of products in the inventory
+     * @param descriptions new descriptions of products in the inventory
+     * @param quantityDeltas stock changes of products in the inventory
+     * @param removed products to remove
+     * @throws UncheckedIOException if the changes could not be journaled, in which case
+     *         those journaled before the failure have been applied
+     */
+    public void applyChanges(Collection<T> added, Map<T, Money> prices, Map<T, String> descriptions,
+            Map<T, Integer> quantityDeltas, Collection<T> removed) {
+        applyChanges(added, prices, descriptions, quantityDeltas, removed, -1, -1);
+    }
+
+    /**
+     * Applies a batch of changes that brings the inventory to a new version of the
+     * JSON file, as applyChanges does, then records that version. The version is
+     * journaled after the changes, so a restart that replays it has replayed them all
+     * and can trust the snapshot and journal over the file without a new checkpoint.
+     *
+     * @param added new products to add
+     * @param prices new prices of products in the inventory
+     * @param descriptions new descriptions of products in the inventory
+     * @param quantityDeltas stock changes of products in the inventory
+     * @param removed products to remove
+     * @param sourceModified the modification time of the file version, or -1 to record none
+     * @param sourceLength the length of the file version, or -1 to record none
+     * @throws UncheckedIOException if the changes could not be journaled, in which case
+     *         those journaled before the failure have been applied
+     */
+    void applyChanges(Collection<T> added, Map<T, Money> prices, Map<T, String> descriptions,
+            Map<T, Integer> quantityDeltas, Collection<T> removed, long sourceModified, long sourceLength) {
+        InventoryJournal journal;
+        long sequence = 0;
+        Map<T, Integer> applied = new IdentityHashMap<>(); // stock changes as made, after clamping
+        Set<T> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            synchronized (this) {
+                for (T product : added) {
+                    if (journal != null) {
+                        sequence = journal.logAdd(product);
+                    }
+                    insert(product);
+                }
+                for (Map.Entry<T, Money> change : prices.entrySet()) {
+                    if (journal != null) {
+                        sequence = journal.logPriceChange(change.getKey().getName(), change.getValue());
+                    }
+                    reprice(change.getKey(), change.getValue().getCents());
+                }
+                for (Map.Entry<T, String> change : descriptions.entrySet()) {
+                    if (journal != null) {
+                        sequence = journal.logDescriptionChange(change.getKey().getName(), change.getValue());
+                    }
+                    redescribe(change.getKey(), change.getValue());
+                }
+                for (Map.Entry<T, Integer> change : quantityDeltas.entrySet()) {
+                    T product = change.getKey();
+                    int delta = change.getValue();
+                    if (journal == null) {
+                        adjustClamped(product, delta, applied);
+                    } else {
+                        long logged = journal.logQuantityChange(product.getName(), () -> adjustClamped(product, delta, applied));
+                        sequence = logged == 0 ? sequence : logged;
+                    }
+                }
+                if (!removed.isEmpty()) {
+                    targets.addAll(removed);
+                    targets.removeIf(product -> !byName.contains(product)); // already gone
+                    for (T product : targets) {
+                        if (journal != null) {
+                            sequence = journal.logRemove(product.getName());
+                        }
+                    }
+                    removeAll(targets);
+                }
+                if (sourceLength >= 0) {
+                    if (journal != null) {
+                        sequence = journal.logSourceVersion(sourceModified, sourceLength);
+                    }
+                    setSourceVersion(sourceModified, sourceLength);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        if (eventBus != null) {
+            for (T product : added) {
+                publish(InventoryEventBus.EventType.ADD, product, 0);
+            }
+            for (T product : prices.keySet()) {
+                publish(InventoryEventBus.EventType.PRICE, product, 0);
+            }
+            for (Map.Entry<T, Integer> change : applied.entrySet()) {
+                publish(InventoryEventBus.EventType.QUANTITY, change.getKey(), change.getValue());
+            }
+            for (T product : targets) {
+                publish(InventoryEventBus.EventType.REMOVE, product, 0);
+            }
+        }
+        if (journal != null && sequence != 0) {
+            awaitDurable(journal, sequence);
+        }
+    }
+
+    /**
+     * Changes the stock of a product, taking no more units than are on hand, and
+     * records the change as made.
+     *
+     * @param product the product whose stock changes
+     * @param delta the number of units to add (positive) or take (negative)
+     * @param applied the changes made so far, by product
+     * @return the change as made
+     */
+    private static <T extends SalableProduct> int adjustClamped(T product, int delta, Map<T, Integer> applied) {
+        if (delta > 0) {
+            product.incrementQuantity(delta);
+        } else {
+            int taken;
+            do {
+                taken = Math.min(product.getQuantity(), -delta);
+            } while (!product.tryDecrementQuantity(taken));
+            delta = -taken;
+        }
+        if (delta != 0) {
+            applied.put(product, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Removes a set of products from the inventory list and every index in one pass
+     * over the list. Callers hold this manager's lock.
+     *
+     * @param targets the products to remove, compared by identity
+     */
+    private void removeAll(Set<T> targets) {
+        inventory.removeIf(targets::contains);
+        Set<String> orphaned = new HashSet<>(); // names whose lookup pointed at a removed product
+        for (T removed : targets) {
+            byName.remove(removed);
+            byPrice.remove(removed);
+            searchIndex.remove(removed);
+            String key = nameKey(removed.getName());
+            if (nameIndex.get(key) == removed) {
+                nameIndex.remove(key);
+                orphaned.add(key);
+            }
+        }
+        if (!orphaned.isEmpty()) {
+            // another product may share a removed name; it becomes the one returned by lookups
+            for (T other : inventory) {
+                String key = nameKey(other.getName());
+                if (orphaned.contains(key)) {
+                    nameIndex.putIfAbsent(key, other);
+                }
+            }
+        }
     }
 
     /**
      * Returns the current inventory of salable products.
+     * Wait for any load started by initInventoryAsync to finish before iterating it.
      *
      * @return the inventory of salable products
      */
@@ -77,16 +847,680 @@ public class InventoryManager<T extends SalableProduct> {
      * @return the product with the specified name, or null if the product is not found
      */
     public T getProductByName(String name) {
-        for (T product : inventory) {
-            if (product.getName().equalsIgnoreCase(name)) {
-                return product;
+        if (name == null) {
+            return null;
+        }
+        return nameIndex.get(nameKey(name));
+    }
+
+    /**
+     * Searches product names and descriptions for every word of the query; the last
+     * word may be partially typed.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of products to return
+     * @return up to limit matching products, best match first
+     */
+    public List<T> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    /**
+     * Suggests product names that complete a partially typed name.
+     *
+     * @param prefix the text typed so far
+     * @param limit the maximum number of names to return
+     * @return up to limit product names, best match first
+     */
+    public List<String> autocomplete(String prefix, int limit) {
+        return searchIndex.autocomplete(prefix, limit);
+    }
+
+    /**
+     * Reserves units of a product by taking them out of stock. Reservations on the
+     * same product race on a compare-and-set of its stock count, so stock can never
+     * go negative. The reservation is journaled, and the call returns once it is on
+     * disk; concurrent reservations share a single disk sync. The compare-and-set
+     * runs under the journal's lock, so the journal records stock changes in the
+     * order they were made.
+     *
+     * @param name the name of the product to reserve
+     * @param quantity the number of units to reserve
+     * @return true if the units were reserved, false if the product is unknown or has too little stock
+     * @throws IllegalArgumentException if quantity is negative
+     * @throws UncheckedIOException if the change could not be journaled, in which case no units are reserved
+     * @see #tryReserve(SalableProduct, int)
+     */
+    public boolean tryReserve(String name, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        T product = getProductByName(name);
+        return product != null && tryReserve(product, quantity);
+    }
+
+    /**
+     * Reserves units of a product already looked up, as tryReserve by name does.
+     * Callers holding the product use this rather than its name, which may be
+     * shared, ignoring case, with another product.
+     *
+     * @param product the product to reserve
+     * @param quantity the number of units to reserve
+     * @return true if the units were reserved, false if the product is no longer in the inventory or has too little stock
+     * @throws IllegalArgumentException if quantity is negative
+     * @throws UncheckedIOException if the change could not be journaled, in which case no units are reserved
+     */
+    public boolean tryReserve(T product, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        if (!byName.contains(product)) {
+            return false;
+        }
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            if (journal == null || quantity == 0) {
+                if (!product.tryDecrementQuantity(quantity)) {
+                    return false;
+                }
+                publish(InventoryEventBus.EventType.QUANTITY, product, -quantity);
+                return true;
+            }
+            sequence = journal.logQuantityChange(product.getName(), () -> product.tryDecrementQuantity(quantity) ? -quantity : 0);
+            if (sequence == 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        try {
+            awaitDurable(journal, sequence);
+        } catch (UncheckedIOException e) {
+            product.incrementQuantity(quantity);
+            throw e;
+        }
+        publish(InventoryEventBus.EventType.QUANTITY, product, -quantity);
+        return true;
+    }
+
+    /**
+     * Releases units of a product previously taken by tryReserve back into stock.
+     *
+     * @param name the name of the product to release
+     * @param quantity the number of units to release
+     * @return true if the units were released, false if the product is unknown
+     * @throws IllegalArgumentException if quantity is negative
+     * @throws UncheckedIOException if the change could not be journaled
+     * @see #release(SalableProduct, int)
+     */
+    public boolean release(String name, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        T product = getProductByName(name);
+        return product != null && release(product, quantity);
+    }
+
+    /**
+     * Releases units of a product already looked up back into stock, as release by
+     * name does, for callers holding the product.
+     *
+     * @param product the product to release
+     * @param quantity the number of units to release
+     * @return true if the units were released, false if the product is no longer in the inventory
+     * @throws IllegalArgumentException if quantity is negative
+     * @throws UncheckedIOException if the change could not be journaled
+     */
+    public boolean release(T product, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        if (!byName.contains(product)) {
+            return false;
+        }
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            if (journal == null || quantity == 0) {
+                product.incrementQuantity(quantity);
+                publish(InventoryEventBus.EventType.QUANTITY, product, quantity);
+                return true;
+            }
+            sequence = journal.logQuantityChange(product.getName(), () -> {
+                product.incrementQuantity(quantity);
+                return quantity;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        publish(InventoryEventBus.EventType.QUANTITY, product, quantity);
+        awaitDurable(journal, sequence);
+        return true;
+    }
+
+    /**
+     * Applies a journaled stock change exactly as it was logged. Unlike tryReserve it
+     * cannot be refused: the change was made against the stock of its time, which
+     * replay only gets back by applying every change in the order logged, even where
+     * stock is short in between. Only journal replay calls this, before the journal
+     * is attached.
+     *
+     * @param name the name of the product
+     * @param delta the number of units added (positive) or taken (negative)
+     */
+    void adjustQuantity(String name, int delta) {
+        T product = getProductByName(name);
+        if (product != null) {
+            product.incrementQuantity(delta);
+            publish(InventoryEventBus.EventType.QUANTITY, product, delta);
+        }
+    }
+
+    /**
+     * Reserves a whole order in one step: either every product gets all the units
+     * asked for, or no stock is taken at all. Products are reserved in a fixed order
+     * by compare-and-set and the reservations already made are rolled back as soon
+     * as one product runs short, so orders never wait on each other and cannot
+     * deadlock; a concurrent reservation may briefly see part of an order that is
+     * then rolled back. The whole order is journaled as one record with one disk sync.
+     *
+     * @param order the units to reserve per product; the products must belong to this inventory
+     * @return true if the whole order was reserved, false if any product has too little stock
+     * @throws IllegalArgumentException if a quantity is negative
+     * @throws UncheckedIOException if the order could not be journaled, in which case no units are reserved
+     */
+    public boolean reserveAll(Map<T, Integer> order) {
+        List<Map.Entry<T, Integer>> lines = sortedLines(order);
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            if (journal == null || lines.isEmpty()) {
+                if (!takeAll(lines)) {
+                    return false;
+                }
+                publishLines(lines, -1);
+                return true;
+            }
+            sequence = journal.logQuantityChanges(names(lines), deltas(lines, -1), () -> takeAll(lines));
+            if (sequence == 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        try {
+            awaitDurable(journal, sequence);
+        } catch (UncheckedIOException e) {
+            restock(lines, lines.size());
+            throw e;
+        }
+        publishLines(lines, -1);
+        return true;
+    }
+
+    /**
+     * Returns a whole order to stock in one step, the reverse of reserveAll. The
+     * order is journaled as one record with one disk sync.
+     *
+     * @param order the units to release per product; the products must belong to this inventory
+     * @throws IllegalArgumentException if a quantity is negative
+     * @throws UncheckedIOException if the order could not be journaled
+     */
+    public void releaseAll(Map<T, Integer> order) {
+        List<Map.Entry<T, Integer>> lines = sortedLines(order);
+        InventoryJournal journal;
+        long sequence;
+        checkpointLock.readLock().lock();
+        try {
+            journal = this.journal;
+            if (journal == null || lines.isEmpty()) {
+                restock(lines, lines.size());
+                publishLines(lines, 1);
+                return;
             }
+            sequence = journal.logQuantityChanges(names(lines), deltas(lines, 1), () -> {
+                restock(lines, lines.size());
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            checkpointLock.readLock().unlock();
         }
-        return null;
+        publishLines(lines, 1);
+        awaitDurable(journal, sequence);
+    }
+
+    /**
+     * Returns the lines of an order with a positive quantity, in insertion order of
+     * their products, so every order takes stock in the same order.
+     *
+     * @param order the units per product
+     * @return the order lines to apply
+     * @throws IllegalArgumentException if a quantity is negative
+     */
+    private static <T extends SalableProduct> List<Map.Entry<T, Integer>> sortedLines(Map<T, Integer> order) {
+        List<Map.Entry<T, Integer>> lines = new ArrayList<>(order.size());
+        for (Map.Entry<T, Integer> line : order.entrySet()) {
+            if (line.getValue() < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative: " + line.getValue());
+            }
+            if (line.getValue() > 0) {
+                lines.add(line);
+            }
+        }
+        lines.sort(Comparator.comparingLong(line -> line.getKey().getSequence()));
+        return lines;
+    }
+
+    /**
+     * Takes the units of every order line out of stock, or none if one runs short.
+     *
+     * @return true if every line was taken
+     */
+    private static <T extends SalableProduct> boolean takeAll(List<Map.Entry<T, Integer>> lines) {
+        int taken = 0;
+        while (taken < lines.size() && lines.get(taken).getKey().tryDecrementQuantity(lines.get(taken).getValue())) {
+            taken++;
+        }
+        if (taken < lines.size()) {
+            restock(lines, taken);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Puts the units of the first count order lines back into stock.
+     */
+    private static <T extends SalableProduct> void restock(List<Map.Entry<T, Integer>> lines, int count) {
+        for (int i = 0; i < count; i++) {
+            lines.get(i).getKey().incrementQuantity(lines.get(i).getValue());
+        }
+    }
+
+    private static <T extends SalableProduct> String[] names(List<Map.Entry<T, Integer>> lines) {
+        String[] names = new String[lines.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = lines.get(i).getKey().getName();
+        }
+        return names;
+    }
+
+    private static <T extends SalableProduct> int[] deltas(List<Map.Entry<T, Integer>> lines, int sign) {
+        int[] deltas = new int[lines.size()];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = sign * lines.get(i).getValue();
+        }
+        return deltas;
+    }
+
+    /**
+     * Streams every change made through this manager to the consumers of an event
+     * bus from now on. Changes made on products directly, such as by setQuantity,
+     * are not seen.
+     *
+     * @param eventBus the bus to publish to, or null to stop publishing
+     */
+    public void setEventBus(InventoryEventBus<T> eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Publishes a change to the event bus, if there is one. Publishing never waits
+     * unless the bus was built to block when full.
+     */
+    private void publish(InventoryEventBus.EventType type, T product, int delta) {
+        InventoryEventBus<T> bus = eventBus;
+        if (bus != null) {
+            bus.publish(type, product, delta);
+        }
+    }
+
+    /**
+     * Publishes the stock change of every order line.
+     */
+    private void publishLines(List<Map.Entry<T, Integer>> lines, int sign) {
+        if (eventBus != null) {
+            for (Map.Entry<T, Integer> line : lines) {
+                publish(InventoryEventBus.EventType.QUANTITY, line.getKey(), sign * line.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the case-folded key under which a product name is indexed.
+     * Names that are already lower case are returned as-is without allocating.
+     *
+     * @param name the product name
+     * @return the lookup key for the name
+     */
+    static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the products ordered by name, from A to Z. The view is kept in order as
+     * products are added and removed, so reading it never sorts or reorders the inventory.
+     *
+     * @return a read-only view of the products in ascending name order
+     */
+    public NavigableSet<T> getProductsByNameAscending() {
+        return Collections.unmodifiableNavigableSet(byName);
+    }
+
+    /**
+     * Returns the products ordered by name, from Z to A.
+     *
+     * @return a read-only view of the products in descending name order
+     */
+    public NavigableSet<T> getProductsByNameDescending() {
+        return Collections.unmodifiableNavigableSet(byName.descendingSet());
+    }
+
+    /**
+     * Returns the products ordered by price, cheapest first.
+     *
+     * @return a read-only view of the products in ascending price order
+     */
+    public NavigableSet<T> getProductsByPriceAscending() {
+        return Collections.unmodifiableNavigableSet(byPrice);
+    }
+
+    /**
+     * Returns the products ordered by price, most expensive first.
+     *
+     * @return a read-only view of the products in descending price order
+     */
+    public NavigableSet<T> getProductsByPriceDescending() {
+        return Collections.unmodifiableNavigableSet(byPrice.descendingSet());
+    }
+
+    /**
+     * Returns the index view listing the products in the given order.
+     *
+     * @param order the order of the listing
+     * @return a read-only view of the products in that order
+     */
+    public NavigableSet<T> getProducts(SortOrder order) {
+        switch (order) {
+        case NAME:
+            return getProductsByNameAscending();
+        case NAME_DESC:
+            return getProductsByNameDescending();
+        case PRICE:
+            return getProductsByPriceAscending();
+        default:
+            return getProductsByPriceDescending();
+        }
+    }
+
+    /**
+     * Returns one page of the inventory in the given order. The first page is read
+     * without a cursor; each page carries the cursor of the next.
+     *
+     * A cursor records the sort key and insertion order of the last product on its
+     * page, and the next page starts right after that position in the sorted index,
+     * so each page costs O(log n + pageSize) with no copy or sort of the inventory.
+     * Products added or removed between pages do not invalidate a cursor: the
+     * listing simply includes or skips them, and never repeats or loses a product
+     * that stays put.
+     *
+     * @param order the order of the listing
+     * @param pageSize the most products on the page
+     * @param cursor the cursor from the previous page, or null for the first page
+     * @return the page
+     * @throws IllegalArgumentException if the page size is not positive, or the cursor
+     *         is malformed or belongs to a listing in another order
+     */
+    public InventoryPage<T> getPage(SortOrder order, int pageSize, String cursor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        NavigableSet<T> view = getProducts(order);
+        if (cursor != null) {
+            view = view.tailSet(cursorBound(order, cursor), false);
+        }
+        List<T> products = new ArrayList<>(Math.min(pageSize, 1024));
+        Iterator<T> iterator = view.iterator();
+        while (products.size() < pageSize && iterator.hasNext()) {
+            products.add(iterator.next());
+        }
+        String next = iterator.hasNext() ? cursorAfter(order, products.get(products.size() - 1)) : null;
+        return new InventoryPage<>(products, next);
+    }
+
+    /**
+     * Encodes the position just after a product in a listing as an opaque cursor:
+     * the order, the product's insertion order and its sort key.
+     *
+     * @param order the order of the listing
+     * @param last the last product on a page
+     * @return the cursor
+     */
+    private static String cursorAfter(SortOrder order, SalableProduct last) {
+        boolean byNameOrder = order == SortOrder.NAME || order == SortOrder.NAME_DESC;
+        String key = byNameOrder ? last.getName() : Long.toString(last.getPriceCents());
+        String position = order.getKey() + '\n' + last.getSequence() + '\n' + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor into a probe product that sorts exactly where the cursor's
+     * product sorted in the listing's index.
+     *
+     * @param order the order of the listing
+     * @param cursor the cursor
+     * @return the probe
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another order
+     */
+    @SuppressWarnings("unchecked")
+    private T cursorBound(SortOrder order, String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (parts.length != 3 || !parts[0].equals(order.getKey())) {
+            throw new IllegalArgumentException("Invalid cursor for sort order " + order.getKey() + ": " + cursor);
+        }
+        try {
+            long sequence = Long.parseLong(parts[1]);
+            boolean byNameOrder = order == SortOrder.NAME || order == SortOrder.NAME_DESC;
+            SalableProduct bound = byNameOrder
+                    ? new SalableProduct(parts[2], null, Money.ZERO, 0)
+                    : new SalableProduct(null, null, Money.ofCents(Long.parseLong(parts[2])), 0);
+            bound.setSequence(sequence);
+            return (T) bound;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Returns the products priced between min and max, inclusive, cheapest first.
+     * The range is located in the price index, so the cost is O(log n) plus the
+     * size of the range.
+     *
+     * @param min the lowest price to include
+     * @param max the highest price to include
+     * @param inStockOnly true to leave out products with no stock
+     * @return the matching products in ascending price order
+     */
+    public List<T> findByPriceRange(Money min, Money max, boolean inStockOnly) {
+        List<T> result = new ArrayList<>();
+        if (min.compareTo(max) > 0) {
+            return result;
+        }
+        for (T product : byPrice.subSet(priceBound(min.getCents(), true), true, priceBound(max.getCents(), false), true)) {
+            if (!inStockOnly || product.getQuantity() > 0) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the products priced between min and max dollars, inclusive, cheapest first.
+     *
+     * @param min the lowest price to include, rounded to the cent
+     * @param max the highest price to include, rounded to the cent
+     * @param inStockOnly true to leave out products with no stock
+     * @return the matching products in ascending price order
+     */
+    public List<T> findByPriceRange(double min, double max, boolean inStockOnly) {
+        return findByPriceRange(Money.of(min), Money.of(max), inStockOnly);
+    }
+
+    /**
+     * Returns the k cheapest products by walking the price index from the low end.
+     *
+     * @param k the maximum number of products to return
+     * @param inStockOnly true to leave out products with no stock
+     * @return up to k products in ascending price order
+     */
+    public List<T> findCheapest(int k, boolean inStockOnly) {
+        return firstMatches(byPrice, k, inStockOnly);
+    }
+
+    /**
+     * Returns the k most expensive products by walking the price index from the high end.
+     *
+     * @param k the maximum number of products to return
+     * @param inStockOnly true to leave out products with no stock
+     * @return up to k products in descending price order
+     */
+    public List<T> findMostExpensive(int k, boolean inStockOnly) {
+        return firstMatches(byPrice.descendingSet(), k, inStockOnly);
+    }
+
+    /**
+     * Collects the first k products of an ordered view, optionally skipping those out of stock.
+     *
+     * @param products the ordered view to walk
+     * @param k the maximum number of products to return
+     * @param inStockOnly true to leave out products with no stock
+     * @return up to k products in the order of the view
+     */
+    private static <T extends SalableProduct> List<T> firstMatches(Iterable<T> products, int k, boolean inStockOnly) {
+        List<T> result = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        if (k <= 0) {
+            return result;
+        }
+        for (T product : products) {
+            if (!inStockOnly || product.getQuantity() > 0) {
+                result.add(product);
+                if (result.size() == k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a placeholder product that sorts before (or after) every real product
+     * of the given price in the price index.
+     *
+     * @param price the price of the bound in cents
+     * @param low true for a bound below all products of that price, false for one above them
+     * @return the bound to search the price index with
+     */
+    @SuppressWarnings("unchecked")
+    private T priceBound(long price, boolean low) {
+        SalableProduct bound = new SalableProduct(null, null, Money.ofCents(price), 0);
+        bound.setSequence(low ? Long.MIN_VALUE : Long.MAX_VALUE);
+        return (T) bound;
+    }
+
+    /**
+     * Returns the value of all stock, price times quantity summed over every product,
+     * in cents. The sum is exact and the loop works on longs only.
+     *
+     * @return the total stock value in cents
+     */
+    public synchronized long getTotalValueCents() {
+        long total = 0;
+        for (int i = 0, n = inventory.size(); i < n; i++) {
+            T product = inventory.get(i);
+            total += product.getPriceCents() * product.getQuantity();
+        }
+        return total;
+    }
+
+    /**
+     * Computes a report of the inventory on the common fork-join pool.
+     *
+     * @param lowStockThreshold products with at most this many units are listed as low on stock
+     * @return the report
+     * @see #analyze(int, ForkJoinPool)
+     */
+    public InventoryReport<T> analyze(int lowStockThreshold) {
+        return analyze(lowStockThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes a report of the inventory: the value of all stock, counts and value
+     * per product type and the products low on stock, summed in parallel on the
+     * given pool.
+     *
+     * The report is consistent, as of a single instant: the quantity and price of
+     * every product are copied while the checkpoint lock is held exclusively, as a
+     * checkpoint does while it copies the products, and the lock is released before
+     * the parallel scan, so changes wait only for the copy.
+     *
+     * @param lowStockThreshold products with at most this many units are listed as low on stock
+     * @param pool the pool to run the scan on
+     * @return the report
+     */
+    @SuppressWarnings("unchecked")
+    public InventoryReport<T> analyze(int lowStockThreshold, ForkJoinPool pool) {
+        T[] products;
+        int[] quantities;
+        long[] prices;
+        checkpointLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                products = (T[]) inventory.toArray(new SalableProduct[0]);
+            }
+            quantities = new int[products.length];
+            prices = new long[products.length];
+            for (int i = 0; i < products.length; i++) {
+                quantities[i] = products[i].getQuantity();
+                prices[i] = products[i].getPriceCents();
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        return InventoryReport.compute(products, quantities, prices, lowStockThreshold, pool);
+    }
+
+    /**
+     * Returns the value of all stock, price times quantity summed over every product.
+     *
+     * @return the total stock value
+     */
+    public Money getTotalValue() {
+        return Money.ofCents(getTotalValueCents());
     }
 
     /**
      * Sorts the inventory by product name in ascending order.
+     * Use getProductsByNameAscending to read this order without re-sorting the shared list.
      */
     public void sortByProductNameAscending() {
         Collections.sort(inventory);
@@ -94,6 +1528,7 @@ public class InventoryManager<T extends SalableProduct> {
 
     /**
      * Sorts the inventory by product name in descending order.
+     * Use getProductsByNameDescending to read this order without re-sorting the shared list.
      */
     public void sortByProductNameDescending() {
         Collections.sort(inventory, Collections.reverseOrder());
@@ -101,17 +1536,19 @@ public class InventoryManager<T extends SalableProduct> {
 
     /**
      * Sorts the inventory by product price in ascending order.
+     * Use getProductsByPriceAscending to read this order without re-sorting the shared list.
      */
     public void sortByProductPriceAscending() {
-        Comparator<T> byPrice = Comparator.comparing(SalableProduct::getPrice);
+        Comparator<T> byPrice = Comparator.comparingLong(SalableProduct::getPriceCents);
         Collections.sort(inventory, byPrice);
     }
 
     /**
      * Sorts the inventory by product price in descending order.
+     * Use getProductsByPriceDescending to read this order without re-sorting the shared list.
      */
     public void sortByProductPriceDescending() {
-        Comparator<T> byPrice = Comparator.comparing(SalableProduct::getPrice);
+        Comparator<T> byPrice = Comparator.comparingLong(SalableProduct::getPriceCents);
         Collections.sort(inventory, byPrice.reversed());
     }
 }
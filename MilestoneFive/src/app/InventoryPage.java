@@ -0,0 +1,52 @@
+package app;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of an inventory listing and the cursor that continues it.
+ *
+ * @param <T> the type of product
+ */
+public final class InventoryPage<T extends SalableProduct> {
+    private final List<T> products;
+    private final String nextCursor;
+
+    /**
+     * Constructs a new InventoryPage object.
+     *
+     * @param products the products on the page
+     * @param nextCursor the cursor of the following page, or null if this is the last page
+     */
+    InventoryPage(List<T> products, String nextCursor) {
+        this.products = Collections.unmodifiableList(products);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the products on the page, in the order of the listing.
+     *
+     * @return an unmodifiable list of products
+     */
+    public List<T> getProducts() {
+        return products;
+    }
+
+    /**
+     * Returns the opaque cursor to pass to InventoryManager.getPage for the next page.
+     *
+     * @return the cursor, or null if there are no more products
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns whether more products follow this page.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
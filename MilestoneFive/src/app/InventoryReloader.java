@@ -0,0 +1,267 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The InventoryReloader class watches the inventory file and applies edits to it
+ * to the live inventory without a restart.
+ *
+ * When the file changes, it is streamed through the parser on the reloader's own
+ * thread and each product is compared, as it is parsed, with a fingerprint of the
+ * version seen last: its price, its quantity and a hash of its description. Only
+ * the fingerprints are kept between reloads, not a second copy of the catalog, and
+ * only the products that changed are held while the file is read. Only the
+ * difference is applied,
+ * through InventoryManager.applyChanges: new products are added, removed ones are
+ * removed, and changed prices, descriptions and stock are updated in place.
+ * Products keep their identity, so carts and stock holds keeping them are
+ * untouched, and stock is moved by the change in the file's quantity rather than
+ * overwritten, so units in carts stay reserved. The version
+ * of the file applied is journaled with the changes, so a reload costs time in
+ * proportion to the file and the change, and never a checkpoint of the inventory.
+ *
+ * Products are matched by name, ignoring case; when the file names a product more
+ * than once, the first record counts. A description edit that happens to keep the
+ * hash of the description, about one in four billion, is not seen until the
+ * product's next edit.
+ *
+ * @param <T> the type of product
+ */
+public class InventoryReloader<T extends SalableProduct> {
+    private static final long QUIET_MILLIS = 250; // how long the file must stay unchanged before it is read
+
+    private final InventoryManager<T> inventoryManager;
+    private final File file;
+    private Map<String, Fingerprint> seen = new HashMap<>(); // case-folded name -> fingerprint of the product as last read from the file
+    private long seenModified = -1; // modification time of the file last read
+    private long seenLength = -1; // length of the file last read
+    private WatchService watcher;
+    private Thread thread;
+
+    /**
+     * Constructs a new InventoryReloader object for the given inventory and file.
+     *
+     * @param inventoryManager the live inventory to update
+     * @param file the JSON inventory file to watch
+     */
+    public InventoryReloader(InventoryManager<T> inventoryManager, File file) {
+        this.inventoryManager = inventoryManager;
+        this.file = file.getAbsoluteFile();
+    }
+
+    /**
+     * Reads the file as it is now, as the version later edits are compared with,
+     * and starts watching it.
+     *
+     * @throws IOException if the file cannot be read or its directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        stop();
+        Map<String, Fingerprint> baseline = new HashMap<>();
+        long modified = file.lastModified();
+        long length = file.length();
+        new InventoryLoader().load(file, SalableProduct.class,
+                product -> baseline.putIfAbsent(InventoryManager.nameKey(product.getName()), new Fingerprint(product)), 0, null);
+        seen = baseline;
+        seenModified = modified;
+        seenLength = length;
+
+        watcher = FileSystems.getDefault().newWatchService();
+        file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        WatchService service = watcher;
+        thread = new Thread(() -> watch(service), "inventory-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file, if the reloader is running.
+     */
+    public synchronized void stop() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            System.err.println("Error closing file watcher: " + e.getMessage());
+        }
+        watcher = null;
+        thread = null;
+    }
+
+    /**
+     * Waits for changes to the file and reloads it once it has stopped changing.
+     *
+     * @param service the watch service registered on the file's directory
+     */
+    private void watch(WatchService service) {
+        Path name = file.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = touches(key, name);
+                // editors write a file in several steps, so wait for it to go quiet
+                while (changed) {
+                    WatchKey more = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (more == null || !touches(more, name)) {
+                        break;
+                    }
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Consumes the events of a watch key and re-arms it.
+     *
+     * @return true if any event concerns the watched file
+     */
+    private static boolean touches(WatchKey key, Path name) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (name.equals(event.context()) || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    /**
+     * Reads the file and applies its differences from the version read last. A
+     * file that cannot be parsed, for example because it is still being written,
+     * is skipped and the next change to it is tried again.
+     *
+     * @return true if the file was read and applied, false if it was unchanged or unreadable
+     */
+    public synchronized boolean reload() {
+        long modified = file.lastModified();
+        long length = file.length();
+        if (modified == seenModified && length == seenLength) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Map<String, Fingerprint> current = new HashMap<>(seen.size() * 4 / 3 + 16);
+        Changes changes = new Changes();
+        try {
+            new InventoryLoader().load(file, SalableProduct.class, product -> {
+                Fingerprint fingerprint = new Fingerprint(product);
+                String key = InventoryManager.nameKey(product.getName());
+                if (current.putIfAbsent(key, fingerprint) == null) {
+                    changes.compare(product, fingerprint, seen.get(key));
+                }
+            }, 0, null);
+        } catch (IOException e) {
+            System.err.println("Error reading JSON file, keeping the current inventory: " + e.getMessage());
+            return false;
+        }
+        for (String key : seen.keySet()) {
+            if (!current.containsKey(key)) {
+                T live = inventoryManager.getProductByName(key);
+                if (live != null) {
+                    changes.removed.add(live);
+                }
+            }
+        }
+
+        try {
+            // the file version is journaled even when nothing changed, so the next start trusts the journal over the file
+            inventoryManager.applyChanges(changes.added, changes.prices, changes.descriptions, changes.quantityDeltas, changes.removed,
+                    modified, length);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error applying inventory changes: " + e.getMessage());
+            return false;
+        }
+        seen = current;
+        seenModified = modified;
+        seenLength = length;
+        System.out.printf("Inventory reloaded in %d ms: %d added, %d repriced, %d redescribed, %d restocked, %d removed%n",
+                (System.nanoTime() - start) / 1_000_000, changes.added.size(), changes.prices.size(), changes.descriptions.size(),
+                changes.quantityDeltas.size(), changes.removed.size());
+        return true;
+    }
+
+    /**
+     * The differences between the file and the version read last, collected while
+     * the file is parsed and applied once all of it has been read.
+     */
+    private final class Changes {
+        final List<T> added = new ArrayList<>(); // in file order
+        final Map<T, Money> prices = new IdentityHashMap<>();
+        final Map<T, String> descriptions = new IdentityHashMap<>();
+        final Map<T, Integer> quantityDeltas = new IdentityHashMap<>();
+        final List<T> removed = new ArrayList<>();
+
+        /**
+         * Compares a product as the file now describes it with the version read last.
+         *
+         * @param record the product as parsed
+         * @param now its fingerprint
+         * @param before the fingerprint of the version read last, or null if it is new to the file
+         */
+        @SuppressWarnings("unchecked")
+        void compare(SalableProduct record, Fingerprint now, Fingerprint before) {
+            if (before != null && before.sameAs(now)) {
+                return;
+            }
+            T live = inventoryManager.getProductByName(record.getName());
+            if (live == null) {
+                added.add((T) record);
+                return;
+            }
+            boolean repriced = before == null ? live.getPriceCents() != now.priceCents : before.priceCents != now.priceCents;
+            if (repriced) {
+                prices.put(live, Money.ofCents(now.priceCents));
+            }
+            boolean redescribed = before == null ? !Objects.equals(live.getBaseDescription(), record.getBaseDescription())
+                    : before.descriptionHash != now.descriptionHash;
+            if (redescribed) {
+                descriptions.put(live, record.getBaseDescription());
+            }
+            if (before != null && before.quantity != now.quantity) {
+                quantityDeltas.put(live, now.quantity - before.quantity);
+            }
+        }
+    }
+
+    /**
+     * What the reloader remembers of a product as the file described it.
+     */
+    private static final class Fingerprint {
+        final long priceCents;
+        final int quantity;
+        final int descriptionHash;
+
+        Fingerprint(SalableProduct product) {
+            this.priceCents = product.getPriceCents();
+            this.quantity = product.getQuantity();
+            this.descriptionHash = Objects.hashCode(product.getBaseDescription());
+        }
+
+        boolean sameAs(Fingerprint other) {
+            return priceCents == other.priceCents && quantity == other.quantity && descriptionHash == other.descriptionHash;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate figures for an inventory taken at one instant: the value of all stock,
+ * product and unit counts and value per product type, and the products running low.
+ *
+ * A report is computed from the products' quantities and prices as copied at that
+ * instant, by splitting them into ranges that are summed in parallel on a
+ * fork-join pool and merged pairwise, so the work spreads over every core the pool
+ * has while the products themselves go on changing.
+ *
+ * @param <T> the type of product
+ */
+public final class InventoryReport<T extends SalableProduct> {
+    private static final int LEAF_SIZE = 16 * 1024; // products summed by one task without splitting further
+
+    private final long productCount;
+    private final long totalUnits;
+    private final long totalValueCents;
+    private final Map<String, TypeStats> byType;
+    private final List<T> lowStock;
+    private final int lowStockThreshold;
+
+    private InventoryReport(T[] products, int[] quantities, Totals totals, int lowStockThreshold) {
+        this.productCount = totals.products;
+        this.totalUnits = totals.units;
+        this.totalValueCents = totals.valueCents;
+        this.byType = Collections.unmodifiableMap(new TreeMap<>(totals.byType));
+        totals.lowStock.sort(Comparator.comparingInt(i -> quantities[i]));
+        List<T> lowStock = new ArrayList<>(totals.lowStock.size());
+        for (int i : totals.lowStock) {
+            lowStock.add(products[i]);
+        }
+        this.lowStock = Collections.unmodifiableList(lowStock);
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * Computes a report over the given products from copies of their quantities
+     * and prices, taken by the caller at the instant the report describes. The
+     * products are only read for their type, which never changes.
+     *
+     * @param products the products to report on
+     * @param quantities the quantity of each product, by index
+     * @param prices the price in cents of each product, by index
+     * @param lowStockThreshold products with at most this many units are listed as low on stock
+     * @param pool the pool to run the computation on
+     * @param <T> the type of product
+     * @return the report
+     */
+    static <T extends SalableProduct> InventoryReport<T> compute(T[] products, int[] quantities, long[] prices,
+            int lowStockThreshold, ForkJoinPool pool) {
+        Totals totals = pool.invoke(new ScanTask(products, quantities, prices, 0, products.length, lowStockThreshold));
+        return new InventoryReport<>(products, quantities, totals, lowStockThreshold);
+    }
+
+    /**
+     * Returns the number of products.
+     *
+     * @return the product count
+     */
+    public long getProductCount() {
+        return productCount;
+    }
+
+    /**
+     * Returns the number of units in stock across all products.
+     *
+     * @return the unit count
+     */
+    public long getTotalUnits() {
+        return totalUnits;
+    }
+
+    /**
+     * Returns the value of all stock, price times quantity summed over every product.
+     *
+     * @return the total stock value
+     */
+    public Money getTotalValue() {
+        return Money.ofCents(totalValueCents);
+    }
+
+    /**
+     * Returns the value of all stock in cents.
+     *
+     * @return the total stock value in cents
+     */
+    public long getTotalValueCents() {
+        return totalValueCents;
+    }
+
+    /**
+     * Returns the figures for each product type, such as Weapon, Armor, Health or
+     * Product, in type name order.
+     *
+     * @return an unmodifiable map from type name to its figures
+     */
+    public Map<String, TypeStats> getByType() {
+        return byType;
+    }
+
+    /**
+     * Returns the products with at most the low-stock threshold of units, fewest first.
+     * The quantities were read when the report was taken and may have moved since.
+     *
+     * @return an unmodifiable list of low-stock products
+     */
+    public List<T> getLowStock() {
+        return lowStock;
+    }
+
+    /**
+     * Returns the quantity at or below which a product counts as low on stock.
+     *
+     * @return the low-stock threshold
+     */
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%,d products, %,d units, value $%s%n", productCount, totalUnits, Money.format(totalValueCents)));
+        for (Map.Entry<String, TypeStats> type : byType.entrySet()) {
+            text.append(String.format("  %-8s %s%n", type.getKey(), type.getValue()));
+        }
+        text.append(String.format("%,d products with %d or fewer units", lowStock.size(), lowStockThreshold));
+        return text.toString();
+    }
+
+    /**
+     * The figures for one product type.
+     */
+    public static final class TypeStats {
+        private long products;
+        private long units;
+        private long valueCents;
+
+        /**
+         * Returns the number of products of the type.
+         *
+         * @return the product count
+         */
+        public long getProductCount() {
+            return products;
+        }
+
+        /**
+         * Returns the number of units in stock of the type.
+         *
+         * @return the unit count
+         */
+        public long getUnits() {
+            return units;
+        }
+
+        /**
+         * Returns the value of the type's stock.
+         *
+         * @return the stock value
+         */
+        public Money getValue() {
+            return Money.ofCents(valueCents);
+        }
+
+        /**
+         * Returns the value of the type's stock in cents.
+         *
+         * @return the stock value in cents
+         */
+        public long getValueCents() {
+            return valueCents;
+        }
+
+        void add(TypeStats other) {
+            products += other.products;
+            units += other.units;
+            valueCents += other.valueCents;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d products, %,d units, value $%s", products, units, Money.format(valueCents));
+        }
+    }
+
+    /**
+     * Partial figures for a range of products, merged as ranges are joined.
+     */
+    private static final class Totals {
+        long products;
+        long units;
+        long valueCents;
+        final Map<String, TypeStats> byType = new LinkedHashMap<>();
+        final List<Integer> lowStock = new ArrayList<>(); // indexes of the products low on stock
+
+        Totals merge(Totals other) {
+            products += other.products;
+            units += other.units;
+            valueCents += other.valueCents;
+            for (Map.Entry<String, TypeStats> type : other.byType.entrySet()) {
+                byType.computeIfAbsent(type.getKey(), key -> new TypeStats()).add(type.getValue());
+            }
+            lowStock.addAll(other.lowStock);
+            return this;
+        }
+    }
+
+    /**
+     * Sums a range of products, splitting it in half while it is larger than a leaf.
+     */
+    private static final class ScanTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient SalableProduct[] products; // tasks are never serialized
+        private final int[] quantities;
+        private final long[] prices;
+        private final int from;
+        private final int to;
+        private final int lowStockThreshold;
+
+        ScanTask(SalableProduct[] products, int[] quantities, long[] prices, int from, int to, int lowStockThreshold) {
+            this.products = products;
+            this.quantities = quantities;
+            this.prices = prices;
+            this.from = from;
+            this.to = to;
+            this.lowStockThreshold = lowStockThreshold;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                ScanTask right = new ScanTask(products, quantities, prices, middle, to, lowStockThreshold);
+                right.fork();
+                Totals left = new ScanTask(products, quantities, prices, from, middle, lowStockThreshold).compute();
+                return left.merge(right.join());
+            }
+            Totals totals = new Totals();
+            String lastType = null;
+            TypeStats stats = null;
+            for (int i = from; i < to; i++) {
+                int quantity = quantities[i];
+                long value = prices[i] * quantity;
+                String type = products[i].getType();
+                if (type != lastType) { // types are constants, so runs of one type skip the map
+                    stats = totals.byType.computeIfAbsent(type, key -> new TypeStats());
+                    lastType = type;
+                }
+                stats.products++;
+                stats.units += quantity;
+                stats.valueCents += value;
+                totals.units += quantity;
+                totals.valueCents += value;
+                if (quantity <= lowStockThreshold) {
+                    totals.lowStock.add(i);
+                }
+            }
+            totals.products = to - from;
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * The InventorySnapshot class writes the inventory to a compact binary file and
+ * reads it back, so startup does not have to re-parse the JSON text each time.
+ *
+ * A snapshot file is a header holding the journal generation the snapshot was
+ * taken at and the version of the JSON file its products came from, the encoded
+ * products, and a trailer with the length and CRC32 of the encoded products, so a
+ * snapshot torn by a crash is detected before it is loaded.
+ * Writing a snapshot keeps the one it replaces as a fallback, and at no point of a
+ * write is the snapshot file missing.
+ */
+public class InventorySnapshot {
+    private static final int MAGIC = 0x494E5653; // "INVS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * The binary encodings a snapshot can be written in.
+     */
+    public enum Format {
+        CBOR(".cbor"),
+        MSGPACK(".msgpack");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Returns the file extension used for snapshots in this format.
+         *
+         * @return the file extension, including the leading dot
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Creates a new Jackson factory that reads and writes this format.
+         *
+         * @return a new factory for this format
+         */
+        JsonFactory newFactory() {
+            return this == CBOR ? new CBORFactory() : new MessagePackFactory();
+        }
+    }
+
+    private final File file;
+    private final ObjectMapper mapper;
+
+    /**
+     * Constructs a new InventorySnapshot object stored in the given file.
+     *
+     * @param file the snapshot file
+     * @param format the binary format of the snapshot
+     */
+    public InventorySnapshot(File file, Format format) {
+        this.file = file;
+        this.mapper = new ObjectMapper(format.newFactory());
+    }
+
+    private InventorySnapshot(File file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns the snapshot file for the given source file, named after the source
+     * with the extension of the format in place of its own.
+     *
+     * @param source the JSON file the snapshot is taken from
+     * @param format the binary format of the snapshot
+     * @return the snapshot file next to the source
+     */
+    public static File fileFor(File source, Format format) {
+        String name = source.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        return new File(source.getParentFile(), base + format.getExtension());
+    }
+
+    /**
+     * Returns the snapshot file.
+     *
+     * @return the snapshot file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the snapshot this one replaced when it was last written.
+     *
+     * @return the previous snapshot, whose file may not exist
+     */
+    public InventorySnapshot previous() {
+        return new InventorySnapshot(new File(file.getPath() + ".prev"), mapper);
+    }
+
+    /**
+     * Deletes the snapshot file and the previous snapshot kept as its fallback.
+     */
+    public void delete() {
+        file.delete();
+        previous().getFile().delete();
+    }
+
+    /**
+     * Writes the given products to the snapshot file at journal generation 0, taken
+     * from no particular version of the JSON file.
+     *
+     * @param products the products to write
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void write(List<? extends SalableProduct> products) throws IOException {
+        write(products, 0, -1, -1);
+    }
+
+    /**
+     * Writes the given products to the snapshot file, one record at a time.
+     * The snapshot is written to a temporary file and forced to disk first. The
+     * snapshot it replaces is then linked as the previous snapshot while it stays in
+     * place, the temporary file is atomically renamed over it and the directory is
+     * forced to disk. A crash at any point leaves the old or the new snapshot in
+     * place, never neither.
+     *
+     * @param products the products to write
+     * @param generation the first journal segment whose changes the snapshot does not contain
+     * @param sourceModified the modification time of the JSON file version the products reflect
+     * @param sourceLength the length of that JSON file version, or -1 if it is unknown
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void write(List<? extends SalableProduct> products, long generation, long sourceModified, long sourceLength) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(generation);
+            data.writeLong(sourceModified);
+            data.writeLong(sourceLength);
+            CRC32 crc = new CRC32();
+            JsonGenerator generator = mapper.getFactory().createGenerator(new CheckedOutputStream(data, crc));
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (SalableProduct product : products) {
+                generator.writeStartObject();
+                generator.writeStringField("name", product.getName());
+                generator.writeStringField("description", product.getBaseDescription());
+                generator.writeFieldName("price");
+                generator.writeNumber(product.getUnitPrice().toBigDecimal());
+                generator.writeNumberField("quantity", product.getQuantity());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.close();
+            data.writeLong(data.size() - HEADER_SIZE);
+            data.writeInt((int) crc.getValue());
+            data.flush();
+            out.getFD().sync();
+        }
+        Path current = file.toPath();
+        if (file.isFile()) {
+            Path previous = previous().getFile().toPath();
+            Files.deleteIfExists(previous);
+            try {
+                Files.createLink(previous, current);
+            } catch (IOException | UnsupportedOperationException e) {
+                // the file system has no hard links
+                Files.copy(current, previous);
+                try (FileChannel channel = FileChannel.open(previous, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        }
+        Files.move(temp.toPath(), current, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Forces a directory's entries to disk, so renames in it survive a crash.
+     *
+     * @param directory the directory to force
+     * @throws IOException if the directory cannot be forced
+     */
+    private static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // some platforms, such as Windows, cannot open a directory; renames there are durable on their own
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Checks that the snapshot file is complete and its checksum matches.
+     *
+     * @return the header of the snapshot
+     * @throws IOException if the snapshot cannot be read, is torn or is corrupt
+     */
+    public Header verify() throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Snapshot " + file + " is truncated");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header = readHeader(in);
+            long bodyLength = length - HEADER_SIZE - TRAILER_SIZE;
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+            for (long left = bodyLength; left > 0; ) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (read < 0) {
+                    throw new IOException("Snapshot " + file + " is truncated");
+                }
+                crc.update(buffer, 0, read);
+                left -= read;
+            }
+            if (in.readLong() != bodyLength || in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Snapshot " + file + " failed its checksum");
+            }
+            return header;
+        }
+    }
+
+    private Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an inventory snapshot: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        return new Header(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Reads every product in the snapshot and hands it to the loader's sink.
+     * The checksum is not checked; call verify first when the file may be torn.
+     *
+     * @param type the class each product record is bound to
+     * @param sink receives every product in snapshot order
+     * @param progressInterval how many products to load between progress reports, or 0 for none
+     * @param listener the progress listener, or null for none
+     * @param <T> the type of product being loaded
+     * @return the number of products loaded
+     * @throws IOException if the snapshot cannot be read
+     */
+    public <T extends SalableProduct> long read(Class<T> type, Consumer<? super T> sink,
+            int progressInterval, InventoryLoader.ProgressListener listener) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            readHeader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new InventoryLoader(mapper).load((InputStream) in, type, sink, progressInterval, listener);
+    }
+
+    /**
+     * What a snapshot records besides its products.
+     */
+    public static final class Header {
+        private final long generation;
+        private final long sourceModified;
+        private final long sourceLength;
+
+        private Header(long generation, long sourceModified, long sourceLength) {
+            this.generation = generation;
+            this.sourceModified = sourceModified;
+            this.sourceLength = sourceLength;
+        }
+
+        /**
+         * Returns the first journal segment whose changes the snapshot does not contain.
+         *
+         * @return the journal generation the snapshot was taken at
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the modification time of the JSON file version the products reflect.
+         *
+         * @return the modification time in milliseconds since the epoch
+         */
+        public long getSourceModified() {
+            return sourceModified;
+        }
+
+        /**
+         * Returns the length of the JSON file version the products reflect.
+         *
+         * @return the length in bytes, or -1 if the snapshot was not taken from a known version
+         */
+        public long getSourceLength() {
+            return sourceLength;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package app;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The LowStockAlerts class is an inventory event consumer that reports a product
+ * once when its stock falls to the alert threshold or below, and again only after
+ * it has been restocked above the threshold and fallen back.
+ *
+ * @param <T> the type of product
+ */
+public class LowStockAlerts<T extends SalableProduct> implements InventoryEventBus.Handler<T> {
+    private final int threshold;
+    private final Set<T> low = Collections.newSetFromMap(new IdentityHashMap<>()); // products already reported, touched only by the consumer thread
+
+    /**
+     * Constructs a new LowStockAlerts object.
+     *
+     * @param threshold products with at most this many units are reported
+     */
+    public LowStockAlerts(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void onEvent(InventoryEventBus.Event<T> event, boolean endOfBatch) {
+        T product = event.getProduct();
+        if (event.getType() == InventoryEventBus.EventType.REMOVE) {
+            low.remove(product);
+        } else if (event.getQuantity() > threshold) {
+            low.remove(product);
+        } else if (low.add(product)) {
+            alert(product, event.getQuantity());
+        }
+    }
+
+    /**
+     * Reports a product that has run low on stock.
+     *
+     * @param product the product
+     * @param quantity its stock
+     */
+    protected void alert(T product, int quantity) {
+        System.out.println("Low stock: " + product.getName() + " has " + quantity + " left");
+    }
+}
@@ -0,0 +1,190 @@
+package app;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * An exact amount of money held as a whole number of cents.
+ *
+ * Prices are stored as cents everywhere, so totals and refunds never pick up the
+ * rounding drift of binary floating point. Code on hot paths can work on the raw
+ * cent values with the static helpers and avoid creating Money objects at all.
+ * In JSON an amount is written as a plain decimal number of dollars.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Returns the amount with the given number of cents.
+     *
+     * @param cents the amount in cents
+     * @return the amount
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Returns the given dollar amount rounded half-up to the nearest cent.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount
+     * @throws ArithmeticException if the amount does not fit in a long number of cents
+     */
+    @JsonCreator
+    public static Money of(BigDecimal dollars) {
+        return ofCents(toCents(dollars));
+    }
+
+    /**
+     * Returns the given dollar amount rounded half-up to the nearest cent.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount
+     */
+    public static Money of(double dollars) {
+        return ofCents(toCents(dollars));
+    }
+
+    /**
+     * Converts a dollar amount to cents, rounding half-up.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount in cents
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toCents(BigDecimal dollars) {
+        return dollars.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a dollar amount to cents, rounding half-up. The double is read by its
+     * shortest decimal form, so 0.1 becomes exactly 10 cents.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount in cents
+     */
+    public static long toCents(double dollars) {
+        return toCents(BigDecimal.valueOf(dollars));
+    }
+
+    /**
+     * Converts cents to the nearest double number of dollars, for display or for
+     * callers that still work in doubles.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Formats an amount of cents as dollars with exactly two decimals, e.g. "12.50".
+     *
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        long whole = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        return (cents < 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Returns the amount in cents.
+     *
+     * @return the amount in cents
+     */
+    public long getCents() {
+        return cents;
+    }
+
+    /**
+     * Returns the amount in dollars as an exact decimal with two places.
+     *
+     * @return the amount in dollars
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Returns the amount in dollars as the nearest double.
+     *
+     * @return the amount in dollars
+     */
+    public double toDouble() {
+        return toDollars(cents);
+    }
+
+    /**
+     * Returns the sum of this amount and another.
+     *
+     * @param other the amount to add
+     * @return the sum
+     * @throws ArithmeticException if the sum overflows
+     */
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    /**
+     * Returns this amount minus another.
+     *
+     * @param other the amount to subtract
+     * @return the difference
+     * @throws ArithmeticException if the difference overflows
+     */
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    /**
+     * Returns this amount multiplied by a quantity.
+     *
+     * @param quantity the number of units
+     * @return the product
+     * @throws ArithmeticException if the product overflows
+     */
+    public Money times(long quantity) {
+        return ofCents(Math.multiplyExact(cents, quantity));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        return cents == ((Money) o).cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * Returns the amount as dollars with two decimals, e.g. "12.50".
+     *
+     * @return the formatted amount
+     */
+    @Override
+    public String toString() {
+        return format(cents);
+    }
+}
@@ -0,0 +1,228 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * The ProductRenderer class writes product listings as text through one reusable
+ * character buffer, flushing it to the output in large chunks rather than once per
+ * line.
+ *
+ * Names and descriptions are copied straight into the buffer and numbers and
+ * prices are written digit by digit, so rendering a line allocates nothing beyond
+ * the first call to a product's getDescription, which the product types cache. A
+ * renderer is not thread-safe.
+ */
+public class ProductRenderer {
+    private static final int BUFFER_SIZE = 64 * 1024; // characters held before a flush
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length; // characters in the buffer
+
+    /**
+     * Constructs a new ProductRenderer object writing to the given writer.
+     *
+     * @param out the writer to flush to
+     */
+    public ProductRenderer(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Constructs a new ProductRenderer object writing to the given stream in its charset.
+     *
+     * @param out the stream to flush to
+     * @param charset the charset to encode text in
+     */
+    public ProductRenderer(OutputStream out, Charset charset) {
+        this(new OutputStreamWriter(out, charset));
+    }
+
+    /**
+     * Constructs a new ProductRenderer object writing to the given print stream in
+     * its charset, such as System.out.
+     *
+     * @param out the stream to flush to
+     */
+    public ProductRenderer(PrintStream out) {
+        this(out, out.charset());
+    }
+
+    /**
+     * Writes the full entry of every product: name and description on one line,
+     * price and quantity on the next, then a blank line.
+     *
+     * @param products the products to list
+     */
+    public void renderListing(Iterable<? extends SalableProduct> products) {
+        for (SalableProduct product : products) {
+            renderEntry(product);
+        }
+        flush();
+    }
+
+    /**
+     * Writes one line per product with its name and price.
+     *
+     * @param products the products to list
+     */
+    public void renderPriceList(Iterable<? extends SalableProduct> products) {
+        for (SalableProduct product : products) {
+            append(product.getName()).append(" - ").appendCents(product.getPriceCents()).newLine();
+        }
+        flush();
+    }
+
+    /**
+     * Writes the full entry of one product to the buffer without flushing it.
+     *
+     * @param product the product to write
+     * @return this renderer
+     */
+    public ProductRenderer renderEntry(SalableProduct product) {
+        append(product.getName()).append(" - ").append(product.getDescription()).append('\n');
+        append("price: ").appendCents(product.getPriceCents()).append(" quantity:").append(product.getQuantity());
+        return append('\n').newLine();
+    }
+
+    /**
+     * Appends text to the buffer.
+     *
+     * @param text the text to append
+     * @return this renderer
+     */
+    public ProductRenderer append(String text) {
+        int offset = 0;
+        int remaining = text.length();
+        while (remaining > 0) {
+            if (length == buffer.length) {
+                drain();
+            }
+            int count = Math.min(remaining, buffer.length - length);
+            text.getChars(offset, offset + count, buffer, length);
+            length += count;
+            offset += count;
+            remaining -= count;
+        }
+        return this;
+    }
+
+    /**
+     * Appends one character to the buffer.
+     *
+     * @param c the character to append
+     * @return this renderer
+     */
+    public ProductRenderer append(char c) {
+        if (length == buffer.length) {
+            drain();
+        }
+        buffer[length++] = c;
+        return this;
+    }
+
+    /**
+     * Appends a number in decimal to the buffer.
+     *
+     * @param value the number to append
+     * @return this renderer
+     */
+    public ProductRenderer append(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append(Long.toString(value));
+            }
+            append('-');
+            value = -value;
+        }
+        reserve(20);
+        int end = length + digits(value);
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+        return this;
+    }
+
+    /**
+     * Appends an amount of cents as dollars with two decimals, as Money.format does.
+     *
+     * @param cents the amount in cents
+     * @return this renderer
+     */
+    public ProductRenderer appendCents(long cents) {
+        if (cents < 0) {
+            append('-');
+        }
+        long whole = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        return append(whole).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Ends the current line.
+     *
+     * @return this renderer
+     */
+    public ProductRenderer newLine() {
+        return append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes everything buffered to the output and flushes the output.
+     *
+     * @throws UncheckedIOException if the output cannot be written
+     */
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing products", e);
+        }
+    }
+
+    /**
+     * Makes room for the given number of characters, draining the buffer if needed.
+     */
+    private void reserve(int count) {
+        if (buffer.length - length < count) {
+            drain();
+        }
+    }
+
+    /**
+     * Hands the buffered characters to the output.
+     */
+    private void drain() {
+        if (length == 0) {
+            return;
+        }
+        try {
+            out.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing products", e);
+        }
+        length = 0;
+    }
+
+    /**
+     * Returns the number of decimal digits of a non-negative number.
+     */
+    private static int digits(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
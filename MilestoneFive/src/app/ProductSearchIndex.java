@@ -0,0 +1,385 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The ProductSearchIndex class is an inverted index over the words of product
+ * names and descriptions. Terms are kept in sorted order, so a partially typed
+ * word is expanded to every term that starts with it without scanning the catalog,
+ * and each term's postings are kept in name order, so a search can stop as soon
+ * as it has found enough results.
+ *
+ * Products are told apart by name and by the insertion order InventoryManager
+ * assigns them. Updates are expected to come from a single writer at a time
+ * (InventoryManager synchronizes its mutators); searches may run concurrently.
+ */
+public class ProductSearchIndex<T extends SalableProduct> {
+    private static final int MAX_PREFIX_TERMS = 64; // most terms one partial word expands to
+
+    // Words too common to narrow a search down; indexing them would only create huge postings
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "for", "in", "of", "the", "that", "to", "with");
+
+    private final Comparator<T> order = Comparator.<T, String>comparing(SalableProduct::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(SalableProduct::getSequence);
+    private final NavigableMap<String, NavigableSet<T>> nameTerms = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, NavigableSet<T>> descriptionTerms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds a product's name and description words to the index.
+     *
+     * @param product the product to index
+     */
+    public void add(T product) {
+        for (String term : tokenize(product.getName())) {
+            nameTerms.computeIfAbsent(term, t -> new ConcurrentSkipListSet<>(order)).add(product);
+        }
+        for (String term : tokenize(product.getBaseDescription())) {
+            descriptionTerms.computeIfAbsent(term, t -> new ConcurrentSkipListSet<>(order)).add(product);
+        }
+    }
+
+    /**
+     * Removes a product's name and description words from the index.
+     *
+     * @param product the product to remove
+     */
+    public void remove(T product) {
+        for (String term : tokenize(product.getName())) {
+            removePosting(nameTerms, term, product);
+        }
+        for (String term : tokenize(product.getBaseDescription())) {
+            removePosting(descriptionTerms, term, product);
+        }
+    }
+
+    /**
+     * Removes every product from the index.
+     */
+    public void clear() {
+        nameTerms.clear();
+        descriptionTerms.clear();
+    }
+
+    /**
+     * Finds the products that contain every word of the query in their name or
+     * description. The last word may be partially typed and matches any word that
+     * starts with it. Products whose name holds every word come first, followed by
+     * the rest; each group is in name order.
+     *
+     * Candidates are walked in name order from the query word with the fewest
+     * postings, and the other words are only checked against those candidates,
+     * so the search stops after limit hits rather than ranking every match.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of products to return
+     * @return up to limit matching products, best match first
+     */
+    public List<T> search(String query, int limit) {
+        List<T> result = new ArrayList<>();
+        List<String> words = tokenizeQuery(query);
+        if (words.isEmpty() || limit <= 0) {
+            return result;
+        }
+
+        int count = words.size();
+        List<List<NavigableSet<T>>> namePostings = new ArrayList<>(count);
+        List<List<NavigableSet<T>>> anyPostings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean prefix = i == count - 1;
+            List<NavigableSet<T>> name = postings(nameTerms, words.get(i), prefix);
+            List<NavigableSet<T>> any = new ArrayList<>(name);
+            any.addAll(postings(descriptionTerms, words.get(i), prefix));
+            namePostings.add(name);
+            anyPostings.add(any);
+        }
+
+        // every word in the name
+        for (T candidate : inOrder(namePostings.get(rarest(namePostings)))) {
+            if (matchesAll(namePostings, candidate)) {
+                result.add(candidate);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        // every word in the name or the description, skipping those already found
+        for (T candidate : inOrder(anyPostings.get(rarest(anyPostings)))) {
+            if (matchesAll(anyPostings, candidate) && !matchesAll(namePostings, candidate)) {
+                result.add(candidate);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Suggests product names for a partially typed query. Every word but the last
+     * must appear in the name; the last may be a prefix of a word in the name.
+     *
+     * @param prefix the text typed so far
+     * @param limit the maximum number of names to return
+     * @return up to limit product names in name order
+     */
+    public List<String> autocomplete(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        List<String> words = tokenizeQuery(prefix);
+        if (words.isEmpty() || limit <= 0) {
+            return names;
+        }
+
+        int count = words.size();
+        List<List<NavigableSet<T>>> namePostings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            namePostings.add(postings(nameTerms, words.get(i), i == count - 1));
+        }
+        for (T candidate : inOrder(namePostings.get(rarest(namePostings)))) {
+            if (matchesAll(namePostings, candidate)) {
+                names.add(candidate.getName());
+                if (names.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the postings of a word, or of up to MAX_PREFIX_TERMS terms starting
+     * with it when it is a prefix.
+     *
+     * @param terms the term dictionary to look in
+     * @param word the word to look up
+     * @param prefix true to match terms that start with the word
+     * @return the posting sets that match the word
+     */
+    private List<NavigableSet<T>> postings(NavigableMap<String, NavigableSet<T>> terms, String word, boolean prefix) {
+        List<NavigableSet<T>> result = new ArrayList<>();
+        if (prefix) {
+            for (NavigableSet<T> postings : terms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                result.add(postings);
+                if (result.size() == MAX_PREFIX_TERMS) {
+                    break;
+                }
+            }
+        } else {
+            NavigableSet<T> postings = terms.get(word);
+            if (postings != null) {
+                result.add(postings);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the query word with the fewest postings.
+     *
+     * @param postings the posting sets of each query word
+     * @return the index of the rarest word
+     */
+    private static <T> int rarest(List<List<NavigableSet<T>>> postings) {
+        int rarest = 0;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < postings.size(); i++) {
+            long size = 0;
+            for (Set<T> set : postings.get(i)) {
+                size += set.size();
+            }
+            if (size < fewest) {
+                fewest = size;
+                rarest = i;
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * Checks whether a product is posted under every query word.
+     *
+     * @param postings the posting sets of each query word
+     * @param product the product to check
+     * @return true if each word has a posting set holding the product
+     */
+    private static <T> boolean matchesAll(List<List<NavigableSet<T>>> postings, T product) {
+        for (List<NavigableSet<T>> word : postings) {
+            boolean found = false;
+            for (Set<T> set : word) {
+                if (set.contains(product)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges several posting sets into one walk in name order, each product once.
+     *
+     * @param postings the posting sets to merge
+     * @return the products of all sets in name order
+     */
+    private Iterable<T> inOrder(List<NavigableSet<T>> postings) {
+        return () -> new MergingIterator(postings);
+    }
+
+    /**
+     * Walks several sorted posting sets at once, always taking the smallest head.
+     */
+    private class MergingIterator implements Iterator<T> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+        private T last; // the product returned last, skipped when another set holds it too
+
+        MergingIterator(List<NavigableSet<T>> postings) {
+            for (NavigableSet<T> set : postings) {
+                Iterator<T> iterator = set.iterator();
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator));
+                }
+            }
+            skipRepeats();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            last = head.product;
+            if (head.advance()) {
+                heads.add(head);
+            }
+            skipRepeats();
+            return last;
+        }
+
+        /**
+         * Drops heads that hold the product just returned.
+         */
+        private void skipRepeats() {
+            while (last != null && !heads.isEmpty() && heads.peek().product == last) {
+                Head head = heads.poll();
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+        }
+
+        /**
+         * The next product of one posting set.
+         */
+        private class Head implements Comparable<Head> {
+            private final Iterator<T> iterator;
+            private T product;
+
+            Head(Iterator<T> iterator) {
+                this.iterator = iterator;
+                this.product = iterator.next();
+            }
+
+            boolean advance() {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                product = iterator.next();
+                return true;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                return order.compare(product, other.product);
+            }
+        }
+    }
+
+    /**
+     * Removes one product from a term's postings, dropping the term once it has none.
+     *
+     * @param terms the term dictionary
+     * @param term the term the product was posted under
+     * @param product the product to remove
+     */
+    private void removePosting(NavigableMap<String, NavigableSet<T>> terms, String term, T product) {
+        NavigableSet<T> postings = terms.get(term);
+        if (postings != null && postings.remove(product) && postings.isEmpty()) {
+            terms.remove(term, postings);
+        }
+    }
+
+    /**
+     * Splits a query into words like tokenize, but keeps a stop word in last place
+     * since it may be the start of a longer word that is still being typed.
+     *
+     * @param query the query to split, may be null
+     * @return the distinct words of the query in order of appearance
+     */
+    static List<String> tokenizeQuery(String query) {
+        List<String> words = tokenize(query, true);
+        for (int i = words.size() - 2; i >= 0; i--) {
+            if (STOP_WORDS.contains(words.get(i))) {
+                words.remove(i);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, leaving out stop words.
+     *
+     * @param text the text to split, may be null
+     * @return the distinct words of the text in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits.
+     *
+     * @param text the text to split, may be null
+     * @param keepStopWords true to keep stop words in the result
+     * @return the distinct words of the text in order of appearance
+     */
+    private static List<String> tokenize(String text, boolean keepStopWords) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if ((keepStopWords || !STOP_WORDS.contains(word)) && !words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
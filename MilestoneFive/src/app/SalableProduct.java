@@ -1,10 +1,15 @@
 package app;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * A class representing a salable product.
  * implements the Comparable interface with a type argument of SalableProduct
@@ -13,8 +18,23 @@ public class SalableProduct implements Comparable<SalableProduct>
 {
     private String name;
     private String description;
-    private double price;
-    private int quantity;
+    private long price; // price in cents
+    private volatile int quantity;
+    private long sequence; // insertion order assigned by InventoryManager, 0 until added
+
+    private static final VarHandle QUANTITY; // atomic access to quantity for concurrent reservations
+
+    static
+    {
+        try
+        {
+            QUANTITY = MethodHandles.lookup().findVarHandle(SalableProduct.class, "quantity", int.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     public SalableProduct() {}
     
@@ -26,10 +46,22 @@ public class SalableProduct implements Comparable<SalableProduct>
      * @param quantity the quantity of the product
      */
     public SalableProduct(String name, String description, double price, int quantity) 
+    {
+        this(name, description, Money.of(price), quantity);
+    }
+
+    /**
+     * Constructs a new SalableProduct object with an exact price.
+     * @param name the name of the product
+     * @param description the description of the product
+     * @param price the price of the product
+     * @param quantity the quantity of the product
+     */
+    public SalableProduct(String name, String description, Money price, int quantity) 
     {
         this.name = name;
         this.description = description;
-        this.price = price;
+        this.price = price.getCents();
         this.quantity = quantity;
     }
 
@@ -52,14 +84,115 @@ public class SalableProduct implements Comparable<SalableProduct>
     }
 
     /**
-     * Returns the price of the product.
+     * Returns the description of the product as it was given, without the
+     * attribute suffix that subclasses append in getDescription.
+     * @return the plain description of the product
+     */
+    String getBaseDescription()
+    {
+        return description;
+    }
+
+    /**
+     * Replaces the plain description with an equal string, so products loaded with
+     * the same description can share one copy of it.
+     * @param description a string equal to the current description
+     */
+    void shareDescription(String description)
+    {
+        this.description = description;
+    }
+
+    /**
+     * Changes the plain description. Only InventoryManager calls this, so that it
+     * can move the product in its search index at the same time.
+     * @param description the new description
+     */
+    void setDescription(String description)
+    {
+        this.description = description;
+    }
+
+    /**
+     * Returns the kind of product; subclasses name their own kind, such as "Weapon".
+     * @return the type of the product
+     */
+    @JsonIgnore
+    public String getType()
+    {
+        return "Product";
+    }
+
+    /**
+     * Returns the price of the product in dollars, rounded to the nearest double.
+     * Use getPriceCents or getUnitPrice for exact arithmetic.
      * @return the price of the product
      */
+    @JsonIgnore
     public double getPrice()
+    {
+        return Money.toDollars(getPriceCents());
+    }
+
+    /**
+     * Returns the exact price of the product in cents.
+     * @return the price of the product in cents
+     */
+    @JsonIgnore
+    public long getPriceCents()
     {
         return price;
     }
 
+    /**
+     * Returns the exact price of the product.
+     * @return the price of the product
+     */
+    @JsonProperty("price")
+    public Money getUnitPrice()
+    {
+        return Money.ofCents(getPriceCents());
+    }
+
+    /**
+     * Sets the price of the product; used when reading it from JSON.
+     * @param price the new price
+     */
+    @JsonProperty("price")
+    void setUnitPrice(Money price)
+    {
+        setPriceCents(price.getCents());
+    }
+
+    /**
+     * Sets the price of the product in cents. Products held by an InventoryManager must be
+     * repriced through InventoryManager.updatePrice so its price order stays correct.
+     * @param price the new price in cents
+     */
+    void setPriceCents(long price)
+    {
+        this.price = price;
+    }
+
+    /**
+     * Returns the insertion order assigned to the product by its InventoryManager.
+     * @return the insertion order, or 0 if the product was never added
+     */
+    long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Sets the insertion order of the product.
+     * @param sequence the insertion order
+     */
+    @JsonIgnore
+    void setSequence(long sequence)
+    {
+        this.sequence = sequence;
+    }
+
     /**
      * Returns the quantity of the product.
      * @return the quantity of the product
@@ -78,13 +211,42 @@ public class SalableProduct implements Comparable<SalableProduct>
         this.quantity = quantity;
     }
 
+    /**
+     * Atomically takes the given number of units out of stock if enough are available.
+     * @param amount the number of units to take, must not be negative
+     * @return true if the units were taken, false if there was not enough stock
+     */
+    public boolean tryDecrementQuantity(int amount)
+    {
+        int current;
+        do
+        {
+            current = quantity;
+            if (current < amount)
+            {
+                return false;
+            }
+        }
+        while (!QUANTITY.weakCompareAndSet(this, current, current - amount));
+        return true;
+    }
+
+    /**
+     * Atomically puts the given number of units back into stock.
+     * @param amount the number of units to add; only journal replay passes a negative amount
+     */
+    public void incrementQuantity(int amount)
+    {
+        QUANTITY.getAndAdd(this, amount);
+    }
+
     /**
      * Returns a string representation of the product.
      * @return a string representation of the product
      */
     @Override
     public String toString() {
-        return String.format("%s - $%.2f - %d in stock - %s", name, price, quantity, description);
+        return name + " - $" + Money.format(price) + " - " + quantity + " in stock - " + description;
     }
 
     /**
@@ -108,7 +270,7 @@ public class SalableProduct implements Comparable<SalableProduct>
         if (this == o) return true;
         if (!(o instanceof SalableProduct)) return false;
         SalableProduct that = (SalableProduct) o;
-        return Double.compare(that.price, price) == 0 && quantity == that.quantity && Objects.equals(name, that.name) && Objects.equals(description, that.description);
+        return that.price == price && quantity == that.quantity && Objects.equals(name, that.name) && Objects.equals(description, that.description);
     }
 
 //    /**
@@ -127,7 +289,7 @@ public class SalableProduct implements Comparable<SalableProduct>
      */
     public static void sortByPriceDescending(List<SalableProduct> products) 
     {
-        Comparator<SalableProduct> priceComparator = Comparator.comparing(SalableProduct::getPrice);
+        Comparator<SalableProduct> priceComparator = Comparator.comparingLong(SalableProduct::getPriceCents);
         Collections.sort(products, priceComparator.reversed());
     }
     
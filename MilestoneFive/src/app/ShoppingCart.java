@@ -3,54 +3,179 @@ package app;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ShoppingCart<T extends SalableProduct> {
-    private ArrayList<T> cart; // The list of products in the shopping cart
+    private ArrayList<LineItem<T>> lines; // One line item per distinct product, in the order first added
+    private Map<T, LineItem<T>> lineIndex; // product -> its line item
+    private int unitCount; // Total number of units across all line items
+    private long totalCents; // Running total price of all units, in cents
 
     /**
      * Constructs a new ShoppingCart object with an empty list of products.
      */
     public ShoppingCart() {
-        cart = new ArrayList<>();
+        lines = new ArrayList<>();
+        lineIndex = new IdentityHashMap<>();
     }
 
     /**
-     * Adds a product to the shopping cart.
+     * Adds one unit of a product to the shopping cart.
      *
      * @param product the product to add
      */
     public void addProduct(T product) {
-        cart.add(product);
+        addProduct(product, 1);
     }
 
     /**
-     * Removes a product from the shopping cart.
+     * Adds several units of a product to the shopping cart.
+     *
+     * @param product the product to add
+     * @param units the number of units to add
+     * @throws IllegalArgumentException if units is negative
+     */
+    public void addProduct(T product, int units) {
+        if (units < 0) {
+            throw new IllegalArgumentException("Units must not be negative: " + units);
+        }
+        if (units == 0) {
+            return;
+        }
+        LineItem<T> line = lineIndex.get(product);
+        if (line == null) {
+            line = new LineItem<>(product);
+            lineIndex.put(product, line);
+            lines.add(line);
+        }
+        line.units += units;
+        unitCount += units;
+        totalCents += line.priceCents * units;
+    }
+
+    /**
+     * Removes one unit of a product from the shopping cart.
      *
      * @param product the product to remove
      */
     public void removeProduct(T product) {
-        cart.remove(product);
+        removeProduct(product, 1);
+    }
+
+    /**
+     * Removes up to the given number of units of a product from the shopping cart.
+     *
+     * @param product the product to remove
+     * @param units the number of units to remove
+     * @return the number of units actually removed
+     * @throws IllegalArgumentException if units is negative
+     */
+    public int removeProduct(T product, int units) {
+        if (units < 0) {
+            throw new IllegalArgumentException("Units must not be negative: " + units);
+        }
+        LineItem<T> line = lineIndex.get(product);
+        if (line == null) {
+            return 0;
+        }
+        int removed = Math.min(units, line.units);
+        line.units -= removed;
+        unitCount -= removed;
+        totalCents -= line.priceCents * removed;
+        if (line.units == 0) {
+            lineIndex.remove(product);
+            lines.remove(line);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns how many units of a product are in the shopping cart.
+     *
+     * @param product the product to look up
+     * @return the number of units of the product in the cart
+     */
+    public int quantityOf(T product) {
+        LineItem<T> line = lineIndex.get(product);
+        return line == null ? 0 : line.units;
+    }
+
+    /**
+     * Returns what the shopping cart charges for its units of a product, at the
+     * price the product had when it was first added.
+     *
+     * @param product the product to look up
+     * @return the price of every unit of the product in the cart
+     */
+    public Money subtotalOf(T product) {
+        LineItem<T> line = lineIndex.get(product);
+        return Money.ofCents(line == null ? 0 : line.priceCents * line.units);
+    }
+
+    /**
+     * Returns the total number of units in the shopping cart.
+     *
+     * @return the number of units in the cart
+     */
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * Returns the total price of every unit in the shopping cart.
+     *
+     * @return the total price of the cart
+     */
+    public Money getTotal() {
+        return Money.ofCents(totalCents);
     }
 
     /**
-     * Returns the contents of the shopping cart.
+     * Returns the total price of every unit in the shopping cart in cents.
+     *
+     * @return the total price of the cart in cents
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Returns the line items of the shopping cart, one per distinct product.
+     *
+     * @return an unmodifiable list of the cart's line items
+     */
+    public List<LineItem<T>> getLineItems() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Returns the contents of the shopping cart with one entry per unit.
      *
      * @return an ArrayList of SalableProduct objects representing the contents of the cart
      */
     public ArrayList<T> getContents() {
-        return cart;
+        ArrayList<T> contents = new ArrayList<>(unitCount);
+        for (LineItem<T> line : lines) {
+            for (int i = 0; i < line.units; i++) {
+                contents.add(line.product);
+            }
+        }
+        return contents;
     }
 
     /**
      * Displays the current contents of the shopping cart.
      */
     public void displayContents() {
-        if (cart.size() == 0) {
+        if (lines.size() == 0) {
             System.out.println("The shopping cart is empty.");
         } else {
             System.out.println("Shopping Cart Contents:");
-            for (SalableProduct product : cart) {
-                System.out.println(product.getName() + " - " + product.getPrice());
+            for (LineItem<T> line : lines) {
+                SalableProduct product = line.getProduct();
+                System.out.println(product.getName() + " - " + Money.format(line.getPriceCents()) + " x " + line.getUnits());
             }
         }
     }
@@ -61,37 +186,90 @@ public class ShoppingCart<T extends SalableProduct> {
      * @return an empty ArrayList of SalableProduct objects representing the contents of the cart
      */
     public ArrayList<T> emptyCart() {
-        cart.clear();
+        lines.clear();
+        lineIndex.clear();
+        unitCount = 0;
+        totalCents = 0;
         System.out.println("Cart is empty");
-        return cart;
+        return new ArrayList<>();
     }
 
     /**
      * Sorts the contents of the shopping cart by name in ascending order.
      */
     public void sortByNameAscending() {
-        Collections.sort(cart);
+        Collections.sort(lines, Comparator.comparing(LineItem::getProduct));
     }
 
     /**
      * Sorts the contents of the shopping cart by name in descending order.
      */
     public void sortByNameDescending() {
-        Collections.sort(cart, Collections.reverseOrder());
+        Collections.sort(lines, Comparator.comparing(LineItem<T>::getProduct, Collections.reverseOrder()));
     }
 
     /**
      * Sorts the contents of the shopping cart by price in ascending order.
      */
     public void sortByPriceAscending() {
-        Collections.sort(cart, new PriceComparator());
+        Collections.sort(lines, Comparator.comparing(LineItem::getProduct, new PriceComparator()));
     }
 
     /**
      * Sorts the contents of the shopping cart by price in descending order.
      */
     public void sortByPriceDescending() {
-        Collections.sort(cart, Collections.reverseOrder(new PriceComparator()));
+        Collections.sort(lines, Comparator.comparing(LineItem::getProduct, Collections.reverseOrder(new PriceComparator())));
+    }
+
+    /**
+     * A product in the shopping cart together with how many units of it are held.
+     * The unit price is fixed when the product is first added, so later price
+     * changes do not alter what the cart charges or refunds.
+     *
+     * @param <T> the type of product
+     */
+    public static class LineItem<T extends SalableProduct> {
+        private final T product;
+        private final long priceCents;
+        private int units;
+
+        /**
+         * Constructs a new LineItem object holding no units of the product.
+         *
+         * @param product the product of this line
+         */
+        LineItem(T product) {
+            this.product = product;
+            this.priceCents = product.getPriceCents();
+        }
+
+        /**
+         * Returns the unit price of this line in cents.
+         *
+         * @return the unit price in cents
+         */
+        public long getPriceCents() {
+            return priceCents;
+        }
+
+        /**
+         * Returns the product of this line.
+         *
+         * @return the product
+         */
+        public T getProduct() {
+            return product;
+        }
+
+        /**
+         * Returns the number of units of the product in the cart.
+         *
+         * @return the number of units
+         */
+        public int getUnits() {
+            return units;
+        }
     }
 
     /**
@@ -107,7 +285,7 @@ public class ShoppingCart<T extends SalableProduct> {
          * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater than the second.
          */
         public int compare(T p1, T p2) {
-            return Double.compare(p1.getPrice(), p2.getPrice());
+            return Long.compare(p1.getPriceCents(), p2.getPriceCents());
         }
     }
 }
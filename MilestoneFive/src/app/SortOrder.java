@@ -0,0 +1,47 @@
+package app;
+
+/**
+ * The orders in which the inventory can be listed, each backed by one of the
+ * InventoryManager's sorted indexes.
+ */
+public enum SortOrder {
+    /** By name, from A to Z. */
+    NAME("name"),
+    /** By name, from Z to A. */
+    NAME_DESC("name-desc"),
+    /** By price, cheapest first. */
+    PRICE("price"),
+    /** By price, most expensive first. */
+    PRICE_DESC("price-desc");
+
+    private final String key;
+
+    SortOrder(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the name of the order as shoppers type it, such as "price-desc".
+     *
+     * @return the order's key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the order with the given key.
+     *
+     * @param key name, name-desc, price or price-desc
+     * @return the order
+     * @throws IllegalArgumentException if there is no order with that key
+     */
+    public static SortOrder fromKey(String key) {
+        for (SortOrder order : values()) {
+            if (order.key.equals(key)) {
+                return order;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort order: " + key);
+    }
+}
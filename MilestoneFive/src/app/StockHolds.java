@@ -0,0 +1,290 @@
+package app;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The StockHolds class puts units into shopping carts on hold for a limited time.
+ * Units added through it are reserved from the inventory as usual, but if a cart
+ * line is left alone for longer than the hold time, the line is taken out of the
+ * cart and its units are returned to stock, so abandoned carts do not keep stock
+ * out of sale for good.
+ *
+ * Every cart line has one hold, restarted whenever units are added to the line.
+ * Holds wait on a hierarchical timer wheel driven by one background thread, so
+ * placing, restarting or cancelling a hold costs the same however many are
+ * outstanding, and each tick only touches the holds that come due in it.
+ *
+ * A cart is guarded by its own monitor, which this class takes while it changes
+ * the cart and which callers hold while they read it.
+ *
+ * @param <T> the type of product
+ */
+public class StockHolds<T extends SalableProduct> {
+    private static final long TICK_MILLIS = 100; // how late a hold may expire
+
+    private final InventoryManager<T> inventoryManager;
+    private final long holdNanos;
+    private final ReentrantLock wheelLock = new ReentrantLock(); // guards the wheel
+    private final TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS));
+    private final Map<ShoppingCart<T>, Map<T, Hold<T>>> holds = new ConcurrentHashMap<>(); // inner maps guarded by the cart's monitor
+    private Thread ticker;
+
+    /**
+     * Constructs a new StockHolds object reserving stock from the given inventory.
+     *
+     * @param inventoryManager the inventory the holds reserve stock from
+     * @param holdTime how long a cart line is held after units were last added to it
+     * @param unit the unit of the hold time
+     * @throws IllegalArgumentException if holdTime is not positive
+     */
+    public StockHolds(InventoryManager<T> inventoryManager, long holdTime, TimeUnit unit) {
+        if (holdTime <= 0) {
+            throw new IllegalArgumentException("Hold time must be positive: " + holdTime);
+        }
+        this.inventoryManager = inventoryManager;
+        this.holdNanos = unit.toNanos(holdTime);
+    }
+
+    /**
+     * Reserves units of a product and adds them to the cart, holding the line for
+     * the hold time from now.
+     *
+     * @param cart the shopper's cart
+     * @param product the product to hold
+     * @param units the number of units to hold
+     * @return true if the units were held, false if there was not enough stock
+     * @throws IllegalArgumentException if units is not positive
+     */
+    public boolean hold(ShoppingCart<T> cart, T product, int units) {
+        if (units <= 0) {
+            throw new IllegalArgumentException("Units must be positive: " + units);
+        }
+        if (!inventoryManager.tryReserve(product, units)) {
+            return false;
+        }
+        long deadline = System.nanoTime() + holdNanos;
+        synchronized (cart) {
+            cart.addProduct(product, units);
+            arm(cart, product, deadline);
+        }
+        return true;
+    }
+
+    /**
+     * Reserves a whole order and adds it to the cart in one step, either every item
+     * or none, holding each line for the hold time from now.
+     *
+     * @param cart the shopper's cart
+     * @param order the units to hold per product
+     * @return true if the order was held, false if any product lacked the stock
+     */
+    public boolean holdAll(ShoppingCart<T> cart, Map<T, Integer> order) {
+        if (!inventoryManager.reserveAll(order)) {
+            return false;
+        }
+        long deadline = System.nanoTime() + holdNanos;
+        synchronized (cart) {
+            for (Map.Entry<T, Integer> item : order.entrySet()) {
+                cart.addProduct(item.getKey(), item.getValue());
+                arm(cart, item.getKey(), deadline);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes units of a product out of the cart and returns them to stock. The hold
+     * on the line ends once the line is empty.
+     *
+     * @param cart the shopper's cart
+     * @param product the product to release
+     * @param units the most units to release
+     * @return the number of units released
+     */
+    public int release(ShoppingCart<T> cart, T product, int units) {
+        int removed;
+        synchronized (cart) {
+            removed = cart.removeProduct(product, units);
+            if (cart.quantityOf(product) == 0) {
+                disarm(cart, product);
+            }
+        }
+        if (removed > 0) {
+            inventoryManager.release(product, removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Empties the cart, ending its holds, and returns every unit in it to stock in one step.
+     *
+     * @param cart the shopper's cart
+     */
+    public void releaseAll(ShoppingCart<T> cart) {
+        Map<T, Integer> held = new LinkedHashMap<>();
+        synchronized (cart) {
+            for (ShoppingCart.LineItem<T> line : cart.getLineItems()) {
+                held.put(line.getProduct(), line.getUnits());
+            }
+            for (Map.Entry<T, Integer> entry : held.entrySet()) {
+                cart.removeProduct(entry.getKey(), entry.getValue());
+            }
+            Map<T, Hold<T>> lines = holds.remove(cart);
+            if (lines != null) {
+                wheelLock.lock();
+                try {
+                    for (Hold<T> hold : lines.values()) {
+                        wheel.cancel(hold);
+                    }
+                } finally {
+                    wheelLock.unlock();
+                }
+            }
+        }
+        inventoryManager.releaseAll(held);
+    }
+
+    /**
+     * Expires every hold that has come due: its line is taken out of the cart and
+     * its units returned to stock. The background thread calls this once a tick.
+     *
+     * @return the number of holds expired
+     */
+    public int expireDue() {
+        List<Hold<T>> due = new ArrayList<>();
+        wheelLock.lock();
+        try {
+            wheel.advance(System.nanoTime(), timeout -> {
+                @SuppressWarnings("unchecked")
+                Hold<T> hold = (Hold<T>) timeout;
+                due.add(hold);
+            });
+        } finally {
+            wheelLock.unlock();
+        }
+        int expired = 0;
+        for (Hold<T> hold : due) {
+            int removed;
+            synchronized (hold.cart) {
+                Map<T, Hold<T>> lines = holds.get(hold.cart);
+                // the line may have been emptied or held again since the hold came due
+                if (lines == null || lines.get(hold.product) != hold || System.nanoTime() - hold.deadlineNanos < 0) {
+                    continue;
+                }
+                lines.remove(hold.product);
+                if (lines.isEmpty()) {
+                    holds.remove(hold.cart);
+                }
+                removed = hold.cart.removeProduct(hold.product, Integer.MAX_VALUE);
+            }
+            expired++;
+            try {
+                inventoryManager.release(hold.product, removed);
+            } catch (UncheckedIOException e) {
+                System.err.println("Error returning stock of an expired hold: " + e.getMessage());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Starts expiring holds in the background. Any thread already running is stopped.
+     */
+    public synchronized void start() {
+        stop();
+        Thread thread = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(TICK_MILLIS);
+                    expireDue();
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }, "stock-holds");
+        thread.setDaemon(true);
+        thread.start();
+        ticker = thread;
+    }
+
+    /**
+     * Stops expiring holds in the background, if it is running.
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Returns the number of cart lines on hold.
+     *
+     * @return the outstanding hold count
+     */
+    public int size() {
+        wheelLock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Starts or restarts the hold on a cart line. Callers hold the cart's monitor.
+     */
+    private void arm(ShoppingCart<T> cart, T product, long deadline) {
+        Hold<T> hold = holds.computeIfAbsent(cart, key -> new IdentityHashMap<>())
+                .computeIfAbsent(product, key -> new Hold<>(cart, product));
+        hold.deadlineNanos = deadline;
+        wheelLock.lock();
+        try {
+            wheel.schedule(hold, deadline);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Ends the hold on a cart line, if it has one. Callers hold the cart's monitor.
+     */
+    private void disarm(ShoppingCart<T> cart, T product) {
+        Map<T, Hold<T>> lines = holds.get(cart);
+        Hold<T> hold = lines == null ? null : lines.remove(product);
+        if (hold == null) {
+            return;
+        }
+        if (lines.isEmpty()) {
+            holds.remove(cart);
+        }
+        wheelLock.lock();
+        try {
+            wheel.cancel(hold);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * The hold on one cart line.
+     */
+    private static final class Hold<T extends SalableProduct> extends TimerWheel.Timeout {
+        final ShoppingCart<T> cart;
+        final T product;
+        long deadlineNanos; // guarded by the cart's monitor
+
+        Hold(ShoppingCart<T> cart, T product) {
+            this.cart = cart;
+            this.product = product;
+        }
+    }
+}
@@ -6,10 +6,9 @@
 
 package app;
 
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class that runs the store front application.
@@ -18,18 +17,27 @@ import java.util.Scanner;
  */
 public class StoreFrontApp 
 {
+    private static final int PAGE_SIZE = 50; // Products shown before asking whether to go on
+    private static final int HOLD_MINUTES = 15; // How long cart items stay reserved after they were last added
+
     private InventoryManager<SalableProduct> inventoryManager; // The inventory manager
     private ShoppingCart<SalableProduct> shoppingCart; // The shopping cart
+    private StockHolds<SalableProduct> stockHolds; // Returns items left in the cart too long to stock
+    private CommandEngine<SalableProduct> commandEngine; // Runs typed commands without prompting
+    private ProductRenderer renderer; // Writes product listings to the console in large chunks
     private Scanner scanner; // The scanner object for user input
 
     /**
      * Constructor for the StoreFrontApp class.
-     * Initializes the inventory manager, the shopping cart and the scanner object.
+     * Initializes the inventory manager, the shopping cart, the stock holds, the command engine, the renderer and the scanner object.
      */
     public StoreFrontApp() 
     {
         inventoryManager = new InventoryManager<>();
         shoppingCart = new ShoppingCart<>();
+        stockHolds = new StockHolds<>(inventoryManager, HOLD_MINUTES, TimeUnit.MINUTES);
+        commandEngine = new CommandEngine<>(inventoryManager, stockHolds);
+        renderer = new ProductRenderer(System.out);
         scanner = new Scanner(System.in);
     }
 
@@ -43,6 +51,9 @@ public class StoreFrontApp
     public void run() 
     {
         inventoryManager.initInventory();
+        inventoryManager.startCheckpointer(1, TimeUnit.MINUTES);
+        inventoryManager.startReloader();
+        stockHolds.start();
         displayWelcomeMessage();
 
         boolean exit = false;
@@ -62,16 +73,21 @@ public class StoreFrontApp
                 processCancellation();
                 break;
             case "4":
-                shoppingCart.displayContents();
+                synchronized (shoppingCart) 
+                {
+                    shoppingCart.displayContents();
+                }
                 break;
             case "5":
-                shoppingCart.emptyCart();
+                stockHolds.releaseAll(shoppingCart);
+                System.out.println("Cart is empty");
                 break;
             case "6":
+                stockHolds.releaseAll(shoppingCart);
                 exit = true;
                 break;
             default:
-                displayError("Invalid input. Please try again.");
+                executeAction(choice);
             }
         }
     }
@@ -96,17 +112,32 @@ public class StoreFrontApp
         System.out.println("4. Shopping Cart");
         System.out.println("5. Empty Cart");
         System.out.println("6. Exit");
+        System.out.println("Or type a command: view, purchase, cancel, cart, empty, report");
         System.out.print("Enter your choice: ");
     }
 
     /**
-     * Executes the selected action based on user input.
+     * Executes a typed command, such as "purchase 2 Iron Sword", through the command
+     * engine and displays its outcome.
      * 
-     * @param action the action to be executed
+     * @param action the command to be executed
      */
     public void executeAction(String action) 
     {
-        // TODO: implement
+        CommandResult<SalableProduct> result;
+        synchronized (shoppingCart) 
+        {
+            result = commandEngine.execute(shoppingCart, action);
+        }
+        if (result.isSuccess()) 
+        {
+            displayFeedback(result.getMessage());
+            renderer.renderListing(result.getProducts());
+        } 
+        else 
+        {
+            displayError(result.getMessage());
+        }
     }
 
     /**
@@ -114,8 +145,6 @@ public class StoreFrontApp
      */
     public void displayInventory()
     {
-        List<SalableProduct> inventory = inventoryManager.getInventory();
-
         // Prompt the user for the sorting order
         System.out.println("\nHow would you like to sort the inventory?");
         System.out.println("1. By name (ascending)");
@@ -125,35 +154,39 @@ public class StoreFrontApp
         System.out.print("Enter your choice: ");
         String choice = scanner.nextLine();
 
-    
-     // Sort the inventory based on the user's choice
+        // Pick the sort order matching the user's choice
+        SortOrder order;
         switch (choice) {
             case "1":
-                Collections.sort(inventory);
+                order = SortOrder.NAME;
                 break;
             case "2":
-                Collections.sort(inventory, Collections.reverseOrder());
+                order = SortOrder.NAME_DESC;
                 break;
             case "3":
-                processCancellation();
+                order = SortOrder.PRICE;
                 break;
             case "4":
-                shoppingCart.displayContents();
-                break;
-            case "5":
-                shoppingCart.emptyCart();
-                break;
-            case "6":
+                order = SortOrder.PRICE_DESC;
                 break;
             default:
                 displayError("Invalid input. Please try again.");
+                return;
             }
 
-        // Display the sorted inventory
+        // Display the sorted inventory a page at a time
         System.out.println("\nInventory:");
-        for (SalableProduct product : inventory) 
+        InventoryPage<SalableProduct> page = inventoryManager.getPage(order, PAGE_SIZE, null);
+        renderer.renderListing(page.getProducts());
+        while (page.hasMore()) 
         {
-            System.out.println(product.getName() + " - " + product.getDescription()+ "\n"+"price: " + product.getPrice()+ " quantity:"+ product.getQuantity()  + "\n");
+            System.out.print("Press Enter for more, or type q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) 
+            {
+                return;
+            }
+            page = inventoryManager.getPage(order, PAGE_SIZE, page.getNextCursor());
+            renderer.renderListing(page.getProducts());
         }
     }
             
@@ -163,10 +196,7 @@ public class StoreFrontApp
     public void processPurchase() 
     {
         System.out.println("\nInventory:");
-        for (SalableProduct product : inventoryManager.getInventory()) 
-        {
-          System.out.println(product.getName() + " - " + product.getPrice());
-        }
+        renderer.renderPriceList(inventoryManager.getInventory());
         System.out.println("\nWhich product would you like to purchase?");
         String productName = scanner.nextLine();
         SalableProduct product = inventoryManager.getProductByName(productName);
@@ -174,19 +204,21 @@ public class StoreFrontApp
         {
             if (product.getQuantity() > 0) 
             {
-                double price = product.getPrice();
+                Money price = product.getUnitPrice();
                 System.out.println("\nThe price for " + productName + " is " + price + ".");
                 System.out.println("Do you want to proceed with the purchase? (y/n)");
                 String confirmation = scanner.nextLine();
-                if (confirmation.equalsIgnoreCase("y")) 
+                if (!confirmation.equalsIgnoreCase("y")) 
                 {
-                    product.setQuantity(product.getQuantity() - 1);
-                    shoppingCart.addProduct(product);
-                    displayFeedback("Purchase successful. Thank you for shopping with us!");
+                    displayFeedback("Purchase canceled.");
+                }
+                else if (stockHolds.hold(shoppingCart, product, 1)) 
+                {
+                    displayFeedback("Purchase successful. Your cart holds it for " + HOLD_MINUTES + " minutes.");
                 } 
                     else 
                     {
-                        displayFeedback("Purchase canceled.");
+                        displayError("Sorry, " + productName + " is out of stock.");
                     }
                 } else {
                     displayError("Sorry, " + productName + " is out of stock.");
@@ -206,21 +238,31 @@ public class StoreFrontApp
                 SalableProduct product = inventoryManager.getProductByName(productName);
                 if (product != null) 
                 {
-                    int quantityInCart = getQuantityInCart(product);
+                    int quantityInCart;
+                    Money total; // at the prices the cart charged, which later price changes do not alter
+                    synchronized (shoppingCart) 
+                    {
+                        quantityInCart = shoppingCart.quantityOf(product);
+                        total = shoppingCart.subtotalOf(product);
+                    }
                     if (quantityInCart > 0) 
                     {
-                        double price = product.getPrice();
                         System.out.println("\nYou have " + quantityInCart + " of " + productName + " in your cart.");
-                        System.out.println("The total price for " + quantityInCart + " " + productName + " is " + (price * quantityInCart) + ".");
+                        System.out.println("The total price for " + quantityInCart + " " + productName + " is " + total + ".");
                         System.out.println("Do you want to proceed with the cancellation? (y/n)");
                         String confirmation = scanner.nextLine();
                         if (confirmation.equalsIgnoreCase("y"))
                         {
-                            product.setQuantity(product.getQuantity() + quantityInCart);
-                            shoppingCart.removeProduct(product);
-                            double price1 = product.getPrice() * quantityInCart;
-                            System.out.println("You have " + quantityInCart + " " + productName + " in your shopping cart, " +
-                              "which will be returned for a total refund of $" + price1 + ".");
+                            int returned;
+                            long refund;
+                            synchronized (shoppingCart) 
+                            {
+                                long totalBefore = shoppingCart.getTotalCents();
+                                returned = stockHolds.release(shoppingCart, product, quantityInCart);
+                                refund = totalBefore - shoppingCart.getTotalCents();
+                            }
+                            System.out.println("You have " + returned + " " + productName + " in your shopping cart, " +
+                              "which will be returned for a total refund of $" + Money.format(refund) + ".");
                         } else {
                             displayFeedback("Cancellation canceled.");
                         }
@@ -240,15 +282,10 @@ public class StoreFrontApp
              */
             public int getQuantityInCart(SalableProduct product) 
             {
-                int quantity = 0;
-                for (SalableProduct item : shoppingCart.getContents()) 
+                synchronized (shoppingCart) 
                 {
-                    if (item.equals(product)) 
-                    {
-                        quantity++;
-                    }
+                    return shoppingCart.quantityOf(product);
                 }
-                return quantity;
             }
 
             /**
@@ -274,7 +311,7 @@ public class StoreFrontApp
             class PriceComparator implements Comparator<SalableProduct> {
                 @Override
                 public int compare(SalableProduct p1, SalableProduct p2) {
-                    return Double.compare(p1.getPrice(), p2.getPrice());
+                    return Long.compare(p1.getPriceCents(), p2.getPriceCents());
                 }
             }
 
@@ -0,0 +1,507 @@
+package app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The StoreFrontServer class serves the store front over HTTP with the JDK's
+ * built-in server, so many shoppers can browse and buy at the same time.
+ *
+ * Every request runs on its own virtual thread, so a request waiting on a stock
+ * reservation or a journal sync parks cheaply instead of holding a platform thread,
+ * and thousands of keep-alive connections can be open at once.
+ *
+ * Endpoints, all answering JSON:
+ * <pre>
+ * GET    /products?sort=name|name-desc|price|price-desc&amp;limit=n&amp;cursor=c   list a page of products
+ * GET    /products/{name}                                       look up a product
+ * POST   /carts                                                 create a cart
+ * GET    /carts/{id}                                            show a cart
+ * POST   /carts/{id}/purchase?product=name&amp;quantity=n           reserve stock into the cart
+ * POST   /carts/{id}/cancel?product=name&amp;quantity=n             return stock from the cart
+ * DELETE /carts/{id}                                            return all stock and drop the cart
+ * GET    /analytics?threshold=n&amp;limit=n                         stock value, per-type figures and low-stock products
+ * GET    /metrics                                               cart store counters
+ * </pre>
+ *
+ * Carts live in a CartStore, one per shopper session; a cart evicted for being
+ * idle or to make room answers 404 like one that never existed.
+ */
+public class StoreFrontServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 4096; // pending connections the listen socket queues
+    private static final int DEFAULT_LIMIT = 100; // products listed when no limit is given
+    private static final int DEFAULT_LOW_STOCK = 5; // units at or below which a product is reported as low on stock
+    private static final int MAX_CARTS = 1_000_000;
+    private static final long CART_IDLE_MINUTES = 30;
+    private static final int EVENT_RING_SIZE = 64 * 1024; // inventory events buffered for slow consumers before they are dropped
+
+    static {
+        // the JDK server closes keep-alive connections beyond 200 idle ones, which breaks
+        // clients holding thousands of connections open; both settings are read once, at
+        // first use of the server, and an explicit -D setting wins
+        setDefault("sun.net.httpserver.maxIdleConnections", "20000");
+        setDefault("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final InventoryManager<SalableProduct> inventoryManager;
+    private final CartStore<SalableProduct> carts;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new StoreFrontServer object serving the given inventory. The
+     * server does not accept connections until it is started.
+     *
+     * @param inventoryManager the inventory to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public StoreFrontServer(InventoryManager<SalableProduct> inventoryManager, int port) throws IOException {
+        this(inventoryManager, new CartStore<>(inventoryManager, MAX_CARTS, CART_IDLE_MINUTES, TimeUnit.MINUTES), port);
+    }
+
+    /**
+     * Constructs a new StoreFrontServer object serving the given inventory and
+     * keeping carts in the given store. The server does not accept connections
+     * until it is started.
+     *
+     * @param inventoryManager the inventory to serve
+     * @param carts the store of shopper carts
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public StoreFrontServer(InventoryManager<SalableProduct> inventoryManager, CartStore<SalableProduct> carts, int port)
+            throws IOException {
+        this.inventoryManager = inventoryManager;
+        this.carts = carts;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/products", exchange -> handle(exchange, this::routeProducts));
+        server.createContext("/carts", exchange -> handle(exchange, this::routeCarts));
+        server.createContext("/analytics", exchange -> handle(exchange, request -> {
+            request.requireMethod("GET");
+            return analyze(request.intParam("threshold", DEFAULT_LOW_STOCK), request.intParam("limit", DEFAULT_LIMIT));
+        }));
+        server.createContext("/metrics", exchange -> handle(exchange, request -> {
+            request.requireMethod("GET");
+            return carts.getMetrics();
+        }));
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    /**
+     * Starts accepting connections and evicting idle carts.
+     */
+    public void start() {
+        carts.startSweeper(1, TimeUnit.MINUTES);
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections, waits up to the given delay for open exchanges
+     * to finish, then stops the request threads.
+     *
+     * @param delaySeconds the longest time to wait for open exchanges
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        carts.stopSweeper();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the counters of the server's cart store.
+     *
+     * @return a snapshot of the cart metrics
+     */
+    public CartStore.Metrics getCartMetrics() {
+        return carts.getMetrics();
+    }
+
+    /**
+     * Routes a request under /products.
+     *
+     * @param request the request
+     * @return the response body
+     */
+    private Object routeProducts(Request request) {
+        request.requireMethod("GET");
+        if (request.path.length == 1) {
+            return listProducts(request.query.get("sort"), request.intParam("limit", DEFAULT_LIMIT), request.query.get("cursor"));
+        }
+        if (request.path.length == 2) {
+            return findProduct(request.path[1]);
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    /**
+     * Routes a request under /carts.
+     *
+     * @param request the request
+     * @return the response body
+     */
+    private Object routeCarts(Request request) {
+        if (request.path.length == 1) {
+            request.requireMethod("POST");
+            request.status = 201;
+            return Map.of("cart", carts.create().getId());
+        }
+        String id = request.path[1];
+        if (request.path.length == 2 && request.method.equals("DELETE")) {
+            if (!carts.close(id)) {
+                throw unknownCart(id);
+            }
+            request.status = 204;
+            return null;
+        }
+        CartStore.Session<SalableProduct> session = carts.get(id);
+        if (session == null) {
+            throw unknownCart(id);
+        }
+        ShoppingCart<SalableProduct> cart = session.getCart();
+        if (request.path.length == 2) {
+            request.requireMethod("GET");
+            synchronized (cart) {
+                return describeCart(id, cart);
+            }
+        }
+        if (request.path.length == 3) {
+            request.requireMethod("POST");
+            SalableProduct product = findProduct(request.requireParam("product"));
+            switch (request.path[2]) {
+            case "purchase":
+                return purchase(session, product, request.intParam("quantity", 1));
+            case "cancel":
+                return cancel(session, product, request.intParam("quantity", Integer.MAX_VALUE));
+            default:
+                break;
+            }
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    /**
+     * Returns a page of up to limit products in the requested order.
+     *
+     * @param sort the order: name, name-desc, price or price-desc; name when null
+     * @param limit the maximum number of products to return
+     * @param cursor the cursor of the page, from the previous page's "next", or null for the first page
+     * @return the products and the cursor of the next page, which is null on the last page
+     */
+    private Map<String, Object> listProducts(String sort, int limit, String cursor) {
+        SortOrder order = sort == null ? SortOrder.NAME : SortOrder.fromKey(sort);
+        InventoryPage<SalableProduct> page = inventoryManager.getPage(order, limit, cursor);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("products", page.getProducts());
+        body.put("next", page.getNextCursor());
+        return body;
+    }
+
+    /**
+     * Reports on the inventory.
+     *
+     * @param threshold products with at most this many units count as low on stock
+     * @param limit the most low-stock products to list
+     * @return the totals, the figures per type and the low-stock products, fewest units first
+     */
+    private Map<String, Object> analyze(int threshold, int limit) {
+        InventoryReport<SalableProduct> report = inventoryManager.analyze(threshold);
+        List<SalableProduct> lowStock = report.getLowStock();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("products", report.getProductCount());
+        body.put("units", report.getTotalUnits());
+        body.put("value", report.getTotalValue());
+        body.put("byType", report.getByType());
+        body.put("lowStockCount", lowStock.size());
+        body.put("lowStock", lowStock.subList(0, Math.max(0, Math.min(limit, lowStock.size()))));
+        return body;
+    }
+
+    /**
+     * Returns the product with the given name.
+     *
+     * @param name the product name
+     * @return the product
+     * @throws HttpError with status 404 if there is no such product
+     */
+    private SalableProduct findProduct(String name) {
+        SalableProduct product = inventoryManager.getProductByName(name);
+        if (product == null) {
+            throw new HttpError(404, "Unknown product " + name);
+        }
+        return product;
+    }
+
+    /**
+     * Returns the error for a cart that does not exist or has been evicted.
+     *
+     * @param id the cart id
+     * @return an HttpError with status 404
+     */
+    private static HttpError unknownCart(String id) {
+        return new HttpError(404, "Unknown cart " + id);
+    }
+
+    /**
+     * Reserves units of a product and adds them to a cart.
+     *
+     * @param session the cart's session
+     * @param product the product to buy
+     * @param quantity the number of units
+     * @return the updated cart
+     * @throws HttpError with status 409 if there is too little stock, or 404 if the cart was evicted meanwhile
+     */
+    private Object purchase(CartStore.Session<SalableProduct> session, SalableProduct product, int quantity) {
+        if (quantity <= 0) {
+            throw new HttpError(400, "Quantity must be positive");
+        }
+        // the reservation may wait on a journal sync, so it is made before taking the cart's lock
+        if (!inventoryManager.tryReserve(product, quantity)) {
+            throw new HttpError(409, product.getName() + " is out of stock");
+        }
+        ShoppingCart<SalableProduct> cart = session.getCart();
+        synchronized (cart) {
+            if (session.isOpen()) {
+                cart.addProduct(product, quantity);
+                return describeCart(session.getId(), cart);
+            }
+        }
+        // the cart was evicted and its stock returned while the reservation was made
+        inventoryManager.release(product, quantity);
+        throw unknownCart(session.getId());
+    }
+
+    /**
+     * Removes units of a product from a cart and returns them to stock.
+     *
+     * @param session the cart's session
+     * @param product the product to return
+     * @param quantity the most units to return
+     * @return the updated cart
+     * @throws HttpError with status 409 if the product is not in the cart
+     */
+    private Object cancel(CartStore.Session<SalableProduct> session, SalableProduct product, int quantity) {
+        if (quantity <= 0) {
+            throw new HttpError(400, "Quantity must be positive");
+        }
+        ShoppingCart<SalableProduct> cart = session.getCart();
+        Map<String, Object> body;
+        int removed;
+        synchronized (cart) {
+            removed = cart.removeProduct(product, quantity);
+            body = describeCart(session.getId(), cart);
+        }
+        if (removed == 0) {
+            throw new HttpError(409, product.getName() + " is not in the cart");
+        }
+        inventoryManager.release(product, removed);
+        return body;
+    }
+
+    /**
+     * Builds the JSON view of a cart. Callers hold the cart's lock.
+     *
+     * @param id the cart id
+     * @param cart the cart
+     * @return the cart id, line items, unit count and total
+     */
+    private static Map<String, Object> describeCart(String id, ShoppingCart<SalableProduct> cart) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ShoppingCart.LineItem<SalableProduct> line : cart.getLineItems()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", line.getProduct().getName());
+            item.put("price", Money.ofCents(line.getPriceCents()));
+            item.put("units", line.getUnits());
+            items.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("cart", id);
+        body.put("items", items);
+        body.put("units", cart.getUnitCount());
+        body.put("total", cart.getTotal());
+        return body;
+    }
+
+    /**
+     * Runs a route and writes its result, or the error it raised, as the response.
+     *
+     * @param exchange the HTTP exchange
+     * @param route the route to run
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        int status;
+        Object body;
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream()); // the connection can only be reused once the body is read
+            Request request = new Request(exchange);
+            body = route.handle(request);
+            status = request.status;
+        } catch (HttpError e) {
+            status = e.status;
+            body = Map.of("error", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = Map.of("error", String.valueOf(e.getMessage()));
+        } catch (UncheckedIOException e) {
+            status = 503;
+            body = Map.of("error", "Inventory is unavailable");
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            status = 500;
+            body = Map.of("error", "Internal error");
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A route under one of the server's contexts.
+     */
+    @FunctionalInterface
+    private interface Route {
+        Object handle(Request request);
+    }
+
+    /**
+     * The parts of an HTTP request the routes read.
+     */
+    private static final class Request {
+        final String method;
+        final String[] path; // path segments, starting with the context name
+        final Map<String, String> query;
+        int status = 200; // status of a successful response
+
+        Request(HttpExchange exchange) {
+            method = exchange.getRequestMethod();
+            String rawPath = exchange.getRequestURI().getPath();
+            path = rawPath.replaceAll("^/+|/+$", "").split("/+");
+            query = parseQuery(exchange.getRequestURI().getRawQuery());
+        }
+
+        void requireMethod(String expected) {
+            if (!method.equals(expected)) {
+                throw new HttpError(405, "Method " + method + " not allowed");
+            }
+        }
+
+        String requireParam(String name) {
+            String value = query.get(name);
+            if (value == null) {
+                throw new HttpError(400, "Missing parameter " + name);
+            }
+            return value;
+        }
+
+        int intParam(String name, int defaultValue) {
+            String value = query.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Parameter " + name + " must be a whole number");
+            }
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> query = new HashMap<>();
+            if (rawQuery == null) {
+                return query;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                String key = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return query;
+        }
+    }
+
+    /**
+     * Ends a request with an HTTP error status.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Loads the inventory, starts the checkpointer, the file reloader and the low
+     * stock alerts, and serves the store front until the process is stopped.
+     *
+     * @param args an optional port, 8080 by default
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InventoryManager<SalableProduct> inventoryManager = new InventoryManager<>();
+        inventoryManager.initInventory();
+        inventoryManager.startCheckpointer(1, TimeUnit.MINUTES);
+        inventoryManager.startReloader();
+        InventoryEventBus<SalableProduct> events = new InventoryEventBus<>(EVENT_RING_SIZE, InventoryEventBus.BackPressure.DROP);
+        events.subscribe("low-stock", new LowStockAlerts<>(DEFAULT_LOW_STOCK));
+        events.start();
+        inventoryManager.setEventBus(events);
+        StoreFrontServer server = new StoreFrontServer(inventoryManager, port);
+        server.start();
+        System.out.println("Store front listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,169 @@
+package app;
+
+import java.util.function.Consumer;
+
+/**
+ * The TimerWheel class is a hierarchical hashed timer wheel: it keeps any number of
+ * timeouts and finds the ones that are due as time advances, at O(1) cost to
+ * schedule or cancel a timeout and without scanning the ones not yet due.
+ *
+ * Time is counted in ticks. The wheel has four levels of 64 slots. Level 0 holds
+ * timeouts due within 64 ticks, one slot per tick; each higher level holds timeouts
+ * 64 times further out, one slot per span of the level below. When the level below
+ * has gone once round, the next slot of the level above is emptied into it, so
+ * each timeout is touched at most once per level on its way down. Timeouts beyond
+ * the reach of the top level wait in its furthest slot and are placed again from
+ * there.
+ *
+ * Timeouts are intrusive list nodes, so the wheel allocates nothing per timeout.
+ * A wheel is not thread-safe; callers guard it with a lock.
+ */
+class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS); // ticks the wheel reaches ahead
+
+    private final long tickNanos;
+    private final long originNanos; // System.nanoTime at tick 0
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS]; // sentinels of circular lists
+    private long currentTick; // every timeout due at or before it has expired
+    private int size;
+
+    /**
+     * Constructs a new TimerWheel object whose tick 0 is now.
+     *
+     * @param tickNanos the length of a tick in nanoseconds; timeouts expire up to one tick late
+     */
+    TimerWheel(long tickNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+        }
+        this.tickNanos = tickNanos;
+        this.originNanos = System.nanoTime();
+        for (Timeout[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Timeout();
+            }
+        }
+    }
+
+    /**
+     * Schedules a timeout, or reschedules it if it is already scheduled.
+     *
+     * @param timeout the timeout
+     * @param deadlineNanos when it is due, on the System.nanoTime clock
+     */
+    void schedule(Timeout timeout, long deadlineNanos) {
+        if (timeout.isScheduled()) {
+            cancel(timeout);
+        }
+        // round up, so a timeout never fires early
+        long deadline = Math.floorDiv(deadlineNanos - originNanos + tickNanos - 1, tickNanos);
+        timeout.deadlineTick = Math.max(deadline, currentTick + 1);
+        place(timeout);
+        size++;
+    }
+
+    /**
+     * Cancels a timeout. Cancelling one that is not scheduled does nothing.
+     *
+     * @param timeout the timeout
+     */
+    void cancel(Timeout timeout) {
+        if (timeout.isScheduled()) {
+            timeout.unlink();
+            size--;
+        }
+    }
+
+    /**
+     * Moves time forward to now, handing every timeout that has come due to the
+     * consumer, which may schedule timeouts again.
+     *
+     * @param nowNanos the current time, on the System.nanoTime clock
+     * @param expired receives each timeout as it expires, no longer scheduled
+     */
+    void advance(long nowNanos, Consumer<? super Timeout> expired) {
+        long targetTick = Math.floorDiv(nowNanos - originNanos, tickNanos);
+        while (currentTick < targetTick) {
+            currentTick++;
+            // empty the higher slots that come round at this tick, the highest first
+            int level = 0;
+            while (level + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            for (; level > 0; level--) {
+                Timeout head = slots[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK];
+                while (head.next != head) {
+                    Timeout timeout = head.next;
+                    timeout.unlink();
+                    place(timeout);
+                }
+            }
+            Timeout head = slots[0][(int) currentTick & SLOT_MASK];
+            while (head.next != head) {
+                Timeout timeout = head.next;
+                timeout.unlink();
+                size--;
+                expired.accept(timeout);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of scheduled timeouts.
+     *
+     * @return the timeout count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Puts a timeout in the slot of the lowest level that reaches its deadline.
+     */
+    private void place(Timeout timeout) {
+        long deadline = Math.min(timeout.deadlineTick, currentTick + SPAN - 1);
+        long ahead = deadline - currentTick;
+        int level = 0;
+        while (level + 1 < LEVELS && ahead >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        timeout.linkBefore(slots[level][(int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK]);
+    }
+
+    /**
+     * A timeout that can be scheduled on a wheel. Subclasses carry what is to
+     * happen when it expires.
+     */
+    static class Timeout {
+        private Timeout prev = this;
+        private Timeout next = this;
+        private long deadlineTick;
+
+        /**
+         * Returns whether the timeout is waiting on a wheel.
+         *
+         * @return true if scheduled
+         */
+        boolean isScheduled() {
+            return next != this;
+        }
+
+        private void linkBefore(Timeout head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
@@ -4,6 +4,7 @@ package app;
 public class Weapon extends SalableProduct 
 {
 	private int damage; // The amount of damage the weapon deals
+	private String fullDescription; // getDescription's result, built on first use and cleared when the damage or description changes
 
 	/**
      * Constructs a new Weapon object.
@@ -35,6 +36,18 @@ public class Weapon extends SalableProduct
 	public void setDamage(int damage) 
 	{
         this.damage = damage;
+        this.fullDescription = null;
+    }
+
+	 /**
+     * Changes the plain description, dropping the cached full description.
+     * @param description the new description
+     */
+	@Override
+	void setDescription(String description) 
+	{
+        super.setDescription(description);
+        this.fullDescription = null;
     }
 
 	//Returns the type of the product as a string
@@ -69,7 +82,7 @@ public class Weapon extends SalableProduct
 	 @Override
 	    public String toString() 
 	 {
-	        return String.format("%s - %s - $%.2f - %d", getName(), getDescription(), getPrice(), getQuantity(), damage);
+	        return getName() + " - " + getDescription() + " - $" + Money.format(getPriceCents()) + " - " + getQuantity();
 	 }
 	 
 	 /**
@@ -78,6 +91,12 @@ public class Weapon extends SalableProduct
 	  */
 	   public String getDescription() 
 	   {
-		   return super.getDescription() + " - Attack Power: " + damage;
+		   String description = fullDescription;
+		   if (description == null)
+		   {
+			   description = super.getDescription() + " - Attack Power: " + damage;
+			   fullDescription = description;
+		   }
+		   return description;
 	   }
 }